@@ -1,6 +1,22 @@
 package com.example.flywaydemo;
 
 import com.fasterxml.jackson.annotation.JsonFormat;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import com.sun.management.ThreadMXBean;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.r2dbc.spi.Closeable;
+import io.r2dbc.spi.ConnectionFactories;
+import io.r2dbc.spi.ConnectionFactory;
+import io.r2dbc.spi.ConnectionFactoryOptions;
+import io.r2dbc.spi.R2dbcException;
+import io.r2dbc.spi.Readable;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import jakarta.persistence.Column;
 import jakarta.persistence.Entity;
 import jakarta.persistence.GeneratedValue;
@@ -8,14 +24,61 @@ import jakarta.persistence.GenerationType;
 import jakarta.persistence.Id;
 import jakarta.persistence.PreUpdate;
 import jakarta.persistence.Table;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.flywaydb.core.Flyway;
+import org.flywaydb.core.api.output.MigrateResult;
+import org.hibernate.cfg.AvailableSettings;
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.beans.factory.config.BeanPostProcessor;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.Ordered;
+import org.springframework.core.PriorityOrdered;
+import org.springframework.core.annotation.Order;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.DuplicateKeyException;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.http.converter.cbor.MappingJackson2CborHttpMessageConverter;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.http.converter.smile.MappingJackson2SmileHttpMessageConverter;
+import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.http.server.reactive.ServerHttpResponse;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+import org.springframework.lang.Nullable;
+import org.springframework.r2dbc.connection.R2dbcTransactionManager;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.scheduling.annotation.EnableScheduling;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
 import org.springframework.stereotype.Repository;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.reactive.TransactionalOperator;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
@@ -23,17 +86,82 @@ import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.server.WebFilter;
+import org.springframework.web.server.WebFilterChain;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
 
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.sql.CallableStatement;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
 import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.StringJoiner;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import javax.sql.DataSource;
 
 /**
  * Spring Boot Application demonstrating Flyway database migration integration
  * All components are embedded as inner classes for simplicity
  */
 @SpringBootApplication
+@EnableScheduling
 public class FlywayDemoApplication {
 
     public static void main(String[] args) {
@@ -171,63 +299,389 @@ interface UserRepository extends JpaRepository<User, Long> {
     boolean existsByEmail(String email);
 }
 
+// ==================== USER STATS REPOSITORY ====================
+// Hourly signup rollup maintained alongside the users table (V2 migration). Each bucket counts
+// the current users created in that hour, so it can always be rebuilt from users.created_at.
+record SignupCount(LocalDateTime bucketStart, long count) {
+}
+
+record UserStats(long total, List<SignupCount> perDay, List<SignupCount> perHour) {
+}
+
+@Repository
+class UserStatsRepository {
+    private static final String INCREMENT =
+        "UPDATE user_signup_stats SET user_count = user_count + ? WHERE bucket_start = ?";
+    private static final String INSERT =
+        "INSERT INTO user_signup_stats (bucket_start, user_count) VALUES (?, ?)";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    public UserStatsRepository(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    // Runs inside the caller's transaction, so the bucket changes together with the users row
+    public void adjust(LocalDateTime createdAt, long delta) {
+        LocalDateTime bucket = createdAt.truncatedTo(ChronoUnit.HOURS);
+        if (jdbcTemplate.update(INCREMENT, delta, bucket) == 0) {
+            try {
+                jdbcTemplate.update(INSERT, bucket, delta);
+            } catch (DuplicateKeyException e) {
+                // Another transaction created the bucket first
+                jdbcTemplate.update(INCREMENT, delta, bucket);
+            }
+        }
+    }
+
+    public long total() {
+        return jdbcTemplate.queryForObject("SELECT COALESCE(SUM(user_count), 0) FROM user_signup_stats", Long.class);
+    }
+
+    public List<SignupCount> perHour(LocalDateTime from, LocalDateTime to) {
+        return jdbcTemplate.query(
+            "SELECT bucket_start, user_count FROM user_signup_stats " +
+            "WHERE bucket_start >= ? AND bucket_start < ? ORDER BY bucket_start",
+            (rs, rowNum) -> new SignupCount(rs.getObject(1, LocalDateTime.class), rs.getLong(2)),
+            from.truncatedTo(ChronoUnit.HOURS), to);
+    }
+
+    public List<SignupCount> perDay(LocalDateTime from, LocalDateTime to) {
+        return jdbcTemplate.query(
+            "SELECT CAST(CAST(bucket_start AS DATE) AS TIMESTAMP), SUM(user_count) " +
+            "FROM user_signup_stats WHERE bucket_start >= ? AND bucket_start < ? " +
+            "GROUP BY CAST(CAST(bucket_start AS DATE) AS TIMESTAMP) ORDER BY 1",
+            (rs, rowNum) -> new SignupCount(rs.getObject(1, LocalDateTime.class), rs.getLong(2)),
+            from.truncatedTo(ChronoUnit.DAYS), to);
+    }
+}
+
+// ==================== USER ARCHIVE REPOSITORY ====================
+// Cold tier for users whose updated_at is older than users.archive.after (V3 migration).
+// Keeping them out of users keeps the hot unique indexes small; a lookup that misses the hot
+// table promotes the archived row back with its original id.
+@Repository
+class UserArchiveRepository {
+    private static final String COLUMNS = "id, username, email, first_name, last_name, created_at, updated_at";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    public UserArchiveRepository(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    public List<User> findAll() {
+        return jdbcTemplate.query("SELECT " + COLUMNS + " FROM users_archive", UserArchiveRepository::toUser);
+    }
+
+    public boolean existsById(Long id) {
+        return exists("id", id);
+    }
+
+    public boolean existsByUsername(String username) {
+        return exists("username", username);
+    }
+
+    public boolean existsByEmail(String email) {
+        return exists("email", email);
+    }
+
+    public long count() {
+        return jdbcTemplate.queryForObject("SELECT COUNT(*) FROM users_archive", Long.class);
+    }
+
+    @Transactional
+    public boolean promoteById(Long id) {
+        return promote("id", id);
+    }
+
+    @Transactional
+    public boolean promoteByUsername(String username) {
+        return promote("username", username);
+    }
+
+    @Transactional
+    public boolean promoteByEmail(String email) {
+        return promote("email", email);
+    }
+
+    // Moves up to limit users not updated since cutoff into the archive. Must run in a
+    // transaction: the candidate rows stay locked until they have been copied and deleted.
+    @Transactional
+    public int archiveInactive(LocalDateTime cutoff, int limit) {
+        List<Long> ids = jdbcTemplate.queryForList(
+            "SELECT id FROM users WHERE updated_at < ? FETCH FIRST ? ROWS ONLY FOR UPDATE", Long.class, cutoff, limit);
+        if (ids.isEmpty()) {
+            return 0;
+        }
+        String idList = String.join(", ", Collections.nCopies(ids.size(), "?"));
+        Object[] args = ids.toArray();
+        jdbcTemplate.update("INSERT INTO users_archive (" + COLUMNS + ") SELECT " + COLUMNS +
+            " FROM users WHERE id IN (" + idList + ")", args);
+        return jdbcTemplate.update("DELETE FROM users WHERE id IN (" + idList + ")", args);
+    }
+
+    // column is always one of the constants above, never request input
+    private boolean exists(String column, Object value) {
+        return jdbcTemplate.queryForObject(
+            "SELECT COUNT(*) FROM users_archive WHERE " + column + " = ?", Long.class, value) > 0;
+    }
+
+    // Bumps updated_at so the mover does not archive the user again straight away
+    private boolean promote(String column, Object value) {
+        try {
+            int promoted = jdbcTemplate.update("INSERT INTO users (" + COLUMNS + ") " +
+                "SELECT id, username, email, first_name, last_name, created_at, CURRENT_TIMESTAMP " +
+                "FROM users_archive WHERE " + column + " = ?", value);
+            if (promoted > 0) {
+                jdbcTemplate.update("DELETE FROM users_archive WHERE " + column + " = ?", value);
+            }
+            return promoted > 0;
+        } catch (DuplicateKeyException e) {
+            // A concurrent lookup promoted the same user first
+            return true;
+        }
+    }
+
+    private static User toUser(ResultSet rs, int rowNum) throws SQLException {
+        User user = new User(rs.getString("username"), rs.getString("email"),
+            rs.getString("first_name"), rs.getString("last_name"));
+        user.setId(rs.getLong("id"));
+        user.setCreatedAt(rs.getObject("created_at", LocalDateTime.class));
+        user.setUpdatedAt(rs.getObject("updated_at", LocalDateTime.class));
+        return user;
+    }
+}
+
+// ==================== USER SERVICE EXCEPTIONS ====================
+// Not-found and conflict are expected outcomes, not failures. These exceptions skip stack
+// trace capture and only build their message when it is read, so enumeration of missing
+// ids or repeated duplicate signups cost no more than a normal response.
+abstract class UserServiceException extends RuntimeException {
+    protected UserServiceException() {
+        super(null, null, false, false);
+    }
+}
+
+class UserNotFoundException extends UserServiceException {
+    private final Long id;
+
+    public UserNotFoundException(Long id) {
+        this.id = id;
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    @Override
+    public String getMessage() {
+        return "User not found with id: " + id;
+    }
+}
+
+class UserConflictException extends UserServiceException {
+    enum Field {
+        USERNAME("Username"),
+        EMAIL("Email");
+
+        private final String label;
+
+        Field(String label) {
+            this.label = label;
+        }
+    }
+
+    private final Field field;
+    private final String value;
+
+    public UserConflictException(Field field, String value) {
+        this.field = field;
+        this.value = value;
+    }
+
+    // Null unless failure is a unique-index violation, i.e. a concurrent write that won the race.
+    // Other integrity violations (value too long, NOT NULL, CHECK) are bad input, not conflicts.
+    @Nullable
+    static UserConflictException fromUniqueViolation(Throwable failure, String username, String email) {
+        boolean unique = false;
+        boolean onEmail = false;
+        for (Throwable cause = failure; cause != null; cause = cause.getCause()) {
+            String sqlState = cause instanceof SQLException sql ? sql.getSQLState()
+                : cause instanceof R2dbcException r2dbc ? r2dbc.getSqlState() : null;
+            unique |= cause instanceof DuplicateKeyException || "23505".equals(sqlState);
+            onEmail |= String.valueOf(cause.getMessage()).toUpperCase(Locale.ROOT).contains("(EMAIL");
+        }
+        if (!unique) {
+            return null;
+        }
+        return onEmail ? new UserConflictException(Field.EMAIL, email) : new UserConflictException(Field.USERNAME, username);
+    }
+
+    public Field getField() {
+        return field;
+    }
+
+    public String getValue() {
+        return value;
+    }
+
+    @Override
+    public String getMessage() {
+        return field.label + " already exists: " + value;
+    }
+}
+
+class WriteQueueFullException extends UserServiceException {
+    @Override
+    public String getMessage() {
+        return "Write queue is full";
+    }
+}
+
+// The write may still commit later; the caller only stops waiting for it
+class WriteTimeoutException extends UserServiceException {
+    @Override
+    public String getMessage() {
+        return "Write was not committed in time";
+    }
+}
+
 // ==================== USER SERVICE ====================
 @Service
 class UserService {
     private final UserRepository userRepository;
+    private final UserStatsRepository userStatsRepository;
+    private final UserArchiveRepository userArchiveRepository;
+    private final UserDirectory userDirectory;
 
+    // The directory only exists when users.snapshot.enabled=true; otherwise lookups go straight to the database
     @Autowired
-    public UserService(UserRepository userRepository) {
+    public UserService(UserRepository userRepository, UserStatsRepository userStatsRepository,
+                       UserArchiveRepository userArchiveRepository, @Nullable UserDirectory userDirectory) {
         this.userRepository = userRepository;
+        this.userStatsRepository = userStatsRepository;
+        this.userArchiveRepository = userArchiveRepository;
+        this.userDirectory = userDirectory;
     }
 
-    // Get all users
+    // Get all users, hot and archived
     public List<User> getAllUsers() {
-        return userRepository.findAll();
+        List<User> users = new ArrayList<>(userRepository.findAll());
+        users.addAll(userArchiveRepository.findAll());
+        return users;
     }
 
-    // Get user by ID
+    // Get user by ID, from the directory snapshot when it knows the user
     public Optional<User> getUserById(Long id) {
-        return userRepository.findById(id);
+        if (userDirectory != null) {
+            Optional<User> known = userDirectory.findById(id);
+            if (known.isPresent()) {
+                return known;
+            }
+        }
+        return loadUser(id);
+    }
+
+    // Load a managed user for writes, promoting it from the archive on a hot miss. Most misses are
+    // for users that do not exist at all, so a plain read of the archive comes before the write
+    // transaction that moves the row.
+    private Optional<User> loadUser(Long id) {
+        Optional<User> user = userRepository.findById(id);
+        if (user.isEmpty() && userArchiveRepository.existsById(id) && userArchiveRepository.promoteById(id)) {
+            return userRepository.findById(id);
+        }
+        return user;
     }
 
-    // Get user by username
+    // Get user by username, from the directory snapshot when it knows the user, promoting it from the
+    // archive on a hot miss
     public Optional<User> getUserByUsername(String username) {
-        return userRepository.findByUsername(username);
+        if (userDirectory != null) {
+            Optional<User> known = userDirectory.findByUsername(username);
+            if (known.isPresent()) {
+                return known;
+            }
+        }
+        Optional<User> user = userRepository.findByUsername(username);
+        if (user.isEmpty() && userArchiveRepository.existsByUsername(username)
+                && userArchiveRepository.promoteByUsername(username)) {
+            return userRepository.findByUsername(username);
+        }
+        return user;
     }
 
-    // Get user by email
+    // Get user by email, from the directory snapshot when it knows the user, promoting it from the
+    // archive on a hot miss
     public Optional<User> getUserByEmail(String email) {
-        return userRepository.findByEmail(email);
+        if (userDirectory != null) {
+            Optional<User> known = userDirectory.findByEmail(email);
+            if (known.isPresent()) {
+                return known;
+            }
+        }
+        Optional<User> user = userRepository.findByEmail(email);
+        if (user.isEmpty() && userArchiveRepository.existsByEmail(email)
+                && userArchiveRepository.promoteByEmail(email)) {
+            return userRepository.findByEmail(email);
+        }
+        return user;
+    }
+
+    // Usernames and emails stay unique across both tiers
+    private boolean usernameTaken(String username) {
+        return userRepository.existsByUsername(username) || userArchiveRepository.existsByUsername(username);
+    }
+
+    private boolean emailTaken(String email) {
+        return userRepository.existsByEmail(email) || userArchiveRepository.existsByEmail(email);
+    }
+
+    // Get signup statistics from the hourly rollup
+    public UserStats getUserStats(LocalDateTime from, LocalDateTime to) {
+        return new UserStats(userStatsRepository.total(), userStatsRepository.perDay(from, to),
+            userStatsRepository.perHour(from, to));
     }
 
     // Create new user
+    // Expected outcomes must not mark a surrounding (batched) transaction rollback-only
+    @Transactional(noRollbackFor = UserServiceException.class)
     public User createUser(User user) {
         // Validate unique constraints
-        if (userRepository.existsByUsername(user.getUsername())) {
-            throw new RuntimeException("Username already exists: " + user.getUsername());
+        if (usernameTaken(user.getUsername())) {
+            throw new UserConflictException(UserConflictException.Field.USERNAME, user.getUsername());
+        }
+        if (emailTaken(user.getEmail())) {
+            throw new UserConflictException(UserConflictException.Field.EMAIL, user.getEmail());
         }
-        if (userRepository.existsByEmail(user.getEmail())) {
-            throw new RuntimeException("Email already exists: " + user.getEmail());
+        User savedUser = userRepository.save(user);
+        if (savedUser.getCreatedAt() != null) {
+            userStatsRepository.adjust(savedUser.getCreatedAt(), 1);
         }
-        return userRepository.save(user);
+        if (userDirectory != null) {
+            userDirectory.put(savedUser);
+        }
+        return savedUser;
     }
 
     // Update user
+    @Transactional(noRollbackFor = UserServiceException.class)
     public User updateUser(Long id, User userDetails) {
-        User user = userRepository.findById(id)
-            .orElseThrow(() -> new RuntimeException("User not found with id: " + id));
+        User user = loadUser(id)
+            .orElseThrow(() -> new UserNotFoundException(id));
 
         // Check if username is being changed and if it's unique
         if (!user.getUsername().equals(userDetails.getUsername()) &&
-            userRepository.existsByUsername(userDetails.getUsername())) {
-            throw new RuntimeException("Username already exists: " + userDetails.getUsername());
+            usernameTaken(userDetails.getUsername())) {
+            throw new UserConflictException(UserConflictException.Field.USERNAME, userDetails.getUsername());
         }
 
         // Check if email is being changed and if it's unique
         if (!user.getEmail().equals(userDetails.getEmail()) &&
-            userRepository.existsByEmail(userDetails.getEmail())) {
-            throw new RuntimeException("Email already exists: " + userDetails.getEmail());
+            emailTaken(userDetails.getEmail())) {
+            throw new UserConflictException(UserConflictException.Field.EMAIL, userDetails.getEmail());
         }
 
         user.setUsername(userDetails.getUsername());
@@ -236,19 +690,30 @@ class UserService {
         user.setLastName(userDetails.getLastName());
         user.setUpdatedAt(LocalDateTime.now());
 
-        return userRepository.save(user);
+        User savedUser = userRepository.save(user);
+        if (userDirectory != null) {
+            userDirectory.put(savedUser);
+        }
+        return savedUser;
     }
 
     // Delete user
+    @Transactional(noRollbackFor = UserServiceException.class)
     public void deleteUser(Long id) {
-        User user = userRepository.findById(id)
-            .orElseThrow(() -> new RuntimeException("User not found with id: " + id));
+        User user = loadUser(id)
+            .orElseThrow(() -> new UserNotFoundException(id));
         userRepository.delete(user);
+        if (userDirectory != null) {
+            userDirectory.remove(id);
+        }
+        if (user.getCreatedAt() != null) {
+            userStatsRepository.adjust(user.getCreatedAt(), -1);
+        }
     }
 
     // Check if user exists
     public boolean userExists(Long id) {
-        return userRepository.existsById(id);
+        return userRepository.existsById(id) || userArchiveRepository.existsById(id);
     }
 }
 
@@ -257,10 +722,38 @@ class UserService {
 @RequestMapping("/api/users")
 class UserController {
     private final UserService userService;
+    private final UserWriteBatcher userWriteBatcher;
 
+    // The batcher only exists when users.write.batching.enabled=true; otherwise writes go straight to the service
     @Autowired
-    public UserController(UserService userService) {
+    public UserController(UserService userService, @Nullable UserWriteBatcher userWriteBatcher) {
         this.userService = userService;
+        this.userWriteBatcher = userWriteBatcher;
+    }
+
+    // Bounded so callers are not held forever if the writer thread stalls or dies
+    // A concurrent write that won the race to a unique index is a conflict; any other
+    // constraint the row broke is the client's input
+    private static ResponseEntity<User> integrityViolation(DataIntegrityViolationException e, User user) {
+        return UserConflictException.fromUniqueViolation(e, user.getUsername(), user.getEmail()) != null
+            ? ResponseEntity.status(HttpStatus.CONFLICT).build()
+            : ResponseEntity.badRequest().build();
+    }
+
+    private static User awaitWrite(CompletableFuture<User> write, Duration timeout) {
+        try {
+            return write.get(timeout.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw new CompletionException(e.getCause());
+        } catch (TimeoutException e) {
+            throw new WriteTimeoutException();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new WriteTimeoutException();
+        }
     }
 
     // GET /api/users - Get all users
@@ -274,6 +767,20 @@ class UserController {
         }
     }
 
+    // GET /api/users/stats - Get signup totals per day and per hour (defaults to the last 7 days)
+    @GetMapping("/stats")
+    public ResponseEntity<UserStats> getUserStats(
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to) {
+        try {
+            LocalDateTime end = to != null ? to : LocalDateTime.now();
+            LocalDateTime start = from != null ? from : end.minusDays(7);
+            return ResponseEntity.ok(userService.getUserStats(start, end));
+        } catch (Exception e) {
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
+        }
+    }
+
     // GET /api/users/{id} - Get user by ID
     @GetMapping("/{id}")
     public ResponseEntity<User> getUserById(@PathVariable Long id) {
@@ -290,10 +797,16 @@ class UserController {
     @PostMapping
     public ResponseEntity<User> createUser(@RequestBody User user) {
         try {
-            User createdUser = userService.createUser(user);
+            User createdUser = userWriteBatcher != null
+                ? awaitWrite(userWriteBatcher.submitCreate(user), userWriteBatcher.awaitTimeout())
+                : userService.createUser(user);
             return ResponseEntity.status(HttpStatus.CREATED).body(createdUser);
-        } catch (RuntimeException e) {
+        } catch (UserConflictException e) {
             return ResponseEntity.status(HttpStatus.CONFLICT).build();
+        } catch (DataIntegrityViolationException e) {
+            return integrityViolation(e, user);
+        } catch (WriteQueueFullException | WriteTimeoutException e) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).build();
         } catch (Exception e) {
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
         }
@@ -303,14 +816,18 @@ class UserController {
     @PutMapping("/{id}")
     public ResponseEntity<User> updateUser(@PathVariable Long id, @RequestBody User userDetails) {
         try {
-            User updatedUser = userService.updateUser(id, userDetails);
+            User updatedUser = userWriteBatcher != null
+                ? awaitWrite(userWriteBatcher.submitUpdate(id, userDetails), userWriteBatcher.awaitTimeout())
+                : userService.updateUser(id, userDetails);
             return ResponseEntity.ok(updatedUser);
-        } catch (RuntimeException e) {
-            if (e.getMessage().contains("not found")) {
-                return ResponseEntity.notFound().build();
-            } else {
-                return ResponseEntity.status(HttpStatus.CONFLICT).build();
-            }
+        } catch (UserNotFoundException e) {
+            return ResponseEntity.notFound().build();
+        } catch (UserConflictException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).build();
+        } catch (DataIntegrityViolationException e) {
+            return integrityViolation(e, userDetails);
+        } catch (WriteQueueFullException | WriteTimeoutException e) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).build();
         } catch (Exception e) {
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
         }
@@ -322,7 +839,7 @@ class UserController {
         try {
             userService.deleteUser(id);
             return ResponseEntity.noContent().build();
-        } catch (RuntimeException e) {
+        } catch (UserNotFoundException e) {
             return ResponseEntity.notFound().build();
         } catch (Exception e) {
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
@@ -353,3 +870,2492 @@ class UserController {
         }
     }
 }
+
+// ==================== BINARY RESPONSE FORMATS ====================
+// Clients sending Accept: application/cbor or application/x-jackson-smile get a compact
+// binary encoding of the same payload; JSON stays the default. The mappers are built from
+// the Boot-managed builder so spring.jackson.* settings apply to every format.
+@Configuration
+class BinaryFormatConfiguration {
+
+    @Bean
+    public MappingJackson2CborHttpMessageConverter cborHttpMessageConverter(Jackson2ObjectMapperBuilder builder) {
+        return new MappingJackson2CborHttpMessageConverter(builder.factory(new CBORFactory()).build());
+    }
+
+    @Bean
+    public MappingJackson2SmileHttpMessageConverter smileHttpMessageConverter(Jackson2ObjectMapperBuilder builder) {
+        return new MappingJackson2SmileHttpMessageConverter(builder.factory(new SmileFactory()).build());
+    }
+}
+
+// ==================== TOKEN BUCKET ====================
+// Lock-free token bucket in its GCRA form: the whole state is one "theoretical arrival time".
+// Each permit pushes it forward by one emission interval; a request is admitted while that
+// time stays within burst * interval of now. A single CAS replaces refill bookkeeping.
+class TokenBucket {
+    private final long emissionIntervalNanos;
+    private final long burstToleranceNanos;
+    private final AtomicLong theoreticalArrivalNanos;
+
+    public TokenBucket(double ratePerSecond, int burst, long nowNanos) {
+        this.emissionIntervalNanos = (long) (TimeUnit.SECONDS.toNanos(1) / ratePerSecond);
+        this.burstToleranceNanos = emissionIntervalNanos * burst;
+        this.theoreticalArrivalNanos = new AtomicLong(nowNanos);
+    }
+
+    // Returns 0 when a permit was taken, otherwise the nanos until one becomes available
+    public long tryAcquire(long nowNanos) {
+        while (true) {
+            long current = theoreticalArrivalNanos.get();
+            long next = Math.max(current, nowNanos) + emissionIntervalNanos;
+            long excess = next - nowNanos - burstToleranceNanos;
+            if (excess > 0) {
+                return excess;
+            }
+            if (theoreticalArrivalNanos.compareAndSet(current, next)) {
+                return 0;
+            }
+        }
+    }
+
+    // A bucket that has fully refilled carries no state worth keeping
+    public boolean isFull(long nowNanos) {
+        return theoreticalArrivalNanos.get() <= nowNanos;
+    }
+}
+
+// ==================== ADMISSION CONTROL ====================
+// Sheds load on /api/users and /api/reactive/users before it reaches the database: per-client
+// token buckets with separate budgets for full listings, single lookups and writes, behind a
+// global in-flight limit no higher than the connection pool (open-in-view holds a connection
+// for the whole request). Rejections are counted in the users.api.throttled metric, tagged by
+// budget and reason. The servlet and WebFlux filters below only adapt their request types to
+// this policy.
+@Component
+@ConditionalOnProperty(name = "users.admission.enabled", havingValue = "true", matchIfMissing = true)
+class AdmissionControl {
+
+    static final class Budget {
+        private final String name;
+        private final double ratePerSecond;
+        private final int burst;
+        private final ConcurrentHashMap<String, TokenBucket> buckets = new ConcurrentHashMap<>();
+        // Shared by every client first seen while the map is full, so rotating client keys
+        // cannot grow memory or buy fresh bursts
+        private final TokenBucket overflow;
+        private final Counter rateLimited;
+        private final Counter shed;
+
+        Budget(String name, double ratePerSecond, int burst, MeterRegistry meterRegistry) {
+            this.name = name;
+            this.ratePerSecond = ratePerSecond;
+            this.burst = burst;
+            this.overflow = new TokenBucket(ratePerSecond, burst, System.nanoTime());
+            this.rateLimited = meterRegistry.counter("users.api.throttled", "budget", name, "reason", "rate_limit");
+            this.shed = meterRegistry.counter("users.api.throttled", "budget", name, "reason", "concurrency");
+        }
+
+        long tryAcquire(String client, long nowNanos, int maxTrackedClients) {
+            TokenBucket bucket = buckets.get(client);
+            if (bucket == null) {
+                bucket = buckets.size() < maxTrackedClients
+                    ? buckets.computeIfAbsent(client, key -> new TokenBucket(ratePerSecond, burst, nowNanos))
+                    : overflow;
+            }
+            return bucket.tryAcquire(nowNanos);
+        }
+
+        // Buckets of clients that have been quiet long enough to refill are indistinguishable from new ones
+        void evictIdle(long nowNanos) {
+            buckets.values().removeIf(bucket -> bucket.isFull(nowNanos));
+        }
+    }
+
+    // An admitted request holds one in-flight permit until release() is called
+    record Decision(@Nullable HttpStatus rejection, long retryAfterNanos) {
+        static final Decision ADMITTED = new Decision(null, 0);
+
+        boolean admitted() {
+            return rejection == null;
+        }
+
+        String retryAfterSeconds() {
+            return String.valueOf(TimeUnit.NANOSECONDS.toSeconds(retryAfterNanos) + 1);
+        }
+    }
+
+    private static final List<String> USERS_PATHS = List.of("/api/users", "/api/reactive/users");
+    private static final String EXPORT_SUFFIX = "/export";
+
+    private final Semaphore inFlight;
+    private final int maxConcurrentRequests;
+    private final String clientHeader;
+    private final int maxTrackedClients;
+    private final Budget list;
+    private final Budget lookup;
+    private final Budget write;
+
+    // The in-flight limit defaults to the pool size; anything above it only queues requests on getConnection()
+    @Autowired
+    public AdmissionControl(
+            @Value("${users.admission.max-concurrent-requests:${spring.datasource.hikari.maximum-pool-size:10}}")
+            int maxConcurrentRequests,
+            @Value("${spring.datasource.hikari.maximum-pool-size:10}") int connectionPoolSize,
+            @Value("${users.admission.client-header:}") String clientHeader,
+            @Value("${users.admission.max-tracked-clients:100000}") int maxTrackedClients,
+            @Value("${users.admission.list.rate-per-second:5}") double listRate,
+            @Value("${users.admission.list.burst:10}") int listBurst,
+            @Value("${users.admission.lookup.rate-per-second:200}") double lookupRate,
+            @Value("${users.admission.lookup.burst:400}") int lookupBurst,
+            @Value("${users.admission.write.rate-per-second:50}") double writeRate,
+            @Value("${users.admission.write.burst:100}") int writeBurst,
+            MeterRegistry meterRegistry) {
+        if (maxConcurrentRequests > connectionPoolSize) {
+            throw new IllegalStateException("users.admission.max-concurrent-requests (" + maxConcurrentRequests +
+                ") must not exceed spring.datasource.hikari.maximum-pool-size (" + connectionPoolSize + ")");
+        }
+        this.inFlight = new Semaphore(maxConcurrentRequests);
+        this.maxConcurrentRequests = maxConcurrentRequests;
+        this.clientHeader = clientHeader;
+        this.maxTrackedClients = maxTrackedClients;
+        this.list = new Budget("list", listRate, listBurst, meterRegistry);
+        this.lookup = new Budget("lookup", lookupRate, lookupBurst, meterRegistry);
+        this.write = new Budget("write", writeRate, writeBurst, meterRegistry);
+        Gauge.builder("users.api.inflight", inFlight, s -> maxConcurrentRequests - s.availablePermits())
+            .register(meterRegistry);
+    }
+
+    public boolean covers(String path) {
+        return USERS_PATHS.stream().anyMatch(path::startsWith);
+    }
+
+    public int maxConcurrentRequests() {
+        return maxConcurrentRequests;
+    }
+
+    // Header that identifies the client, or empty to use the remote address
+    public String clientHeader() {
+        return clientHeader;
+    }
+
+    // The in-flight permit is taken first, so a request shed with 503 does not spend the client's token
+    public Decision admit(String method, String path, String client) {
+        Budget budget = budgetFor(method, path);
+        if (!inFlight.tryAcquire()) {
+            budget.shed.increment();
+            return new Decision(HttpStatus.SERVICE_UNAVAILABLE, TimeUnit.SECONDS.toNanos(1));
+        }
+        long waitNanos = budget.tryAcquire(client, System.nanoTime(), maxTrackedClients);
+        if (waitNanos > 0) {
+            inFlight.release();
+            budget.rateLimited.increment();
+            return new Decision(HttpStatus.TOO_MANY_REQUESTS, waitNanos);
+        }
+        return Decision.ADMITTED;
+    }
+
+    public void release() {
+        inFlight.release();
+    }
+
+    private Budget budgetFor(String method, String path) {
+        if (!"GET".equals(method) && !"HEAD".equals(method)) {
+            return write;
+        }
+        for (String usersPath : USERS_PATHS) {
+            if (path.equals(usersPath) || path.equals(usersPath + "/") || path.equals(usersPath + EXPORT_SUFFIX)) {
+                return list;
+            }
+        }
+        return lookup;
+    }
+
+    // Off the request path: the sweep is O(tracked clients), and max-tracked-clients caps the maps between sweeps
+    @Scheduled(fixedDelayString = "${users.admission.sweep-interval:PT10S}")
+    public void evictIdleClients() {
+        long now = System.nanoTime();
+        for (Budget budget : List.of(list, lookup, write)) {
+            budget.evictIdle(now);
+        }
+    }
+}
+
+// Runs right after TenantFilter, so requests for unknown or unmigrated tenants are refused
+// without spending a rate-limit token or an in-flight permit
+@Component
+@Order(AdmissionControlFilter.ORDER)
+@ConditionalOnProperty(name = "users.admission.enabled", havingValue = "true", matchIfMissing = true)
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
+class AdmissionControlFilter extends OncePerRequestFilter {
+    static final int ORDER = TenantFilter.ORDER + 1;
+
+    private final AdmissionControl admissionControl;
+
+    @Autowired
+    public AdmissionControlFilter(AdmissionControl admissionControl) {
+        this.admissionControl = admissionControl;
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return !admissionControl.covers(pathOf(request));
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        AdmissionControl.Decision decision =
+            admissionControl.admit(request.getMethod(), pathOf(request), clientOf(request));
+        if (!decision.admitted()) {
+            response.setStatus(decision.rejection().value());
+            response.setHeader("Retry-After", decision.retryAfterSeconds());
+            return;
+        }
+        try {
+            chain.doFilter(request, response);
+        } finally {
+            admissionControl.release();
+        }
+    }
+
+    private String clientOf(HttpServletRequest request) {
+        String clientHeader = admissionControl.clientHeader();
+        if (!clientHeader.isEmpty()) {
+            String client = request.getHeader(clientHeader);
+            if (client != null && !client.isEmpty()) {
+                return client;
+            }
+        }
+        return request.getRemoteAddr();
+    }
+
+    private static String pathOf(HttpServletRequest request) {
+        return request.getRequestURI().substring(request.getContextPath().length());
+    }
+}
+
+// Same policy under the reactive profile, where servlet filters never run. The in-flight
+// permit is held until the response completes, errors or is cancelled.
+@Component
+@ConditionalOnProperty(name = "users.admission.enabled", havingValue = "true", matchIfMissing = true)
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+class ReactiveAdmissionControlFilter implements WebFilter {
+    private final AdmissionControl admissionControl;
+
+    @Autowired
+    public ReactiveAdmissionControlFilter(AdmissionControl admissionControl) {
+        this.admissionControl = admissionControl;
+    }
+
+    @Override
+    public Mono<Void> filter(ServerWebExchange exchange, WebFilterChain chain) {
+        ServerHttpRequest request = exchange.getRequest();
+        String path = request.getPath().pathWithinApplication().value();
+        if (!admissionControl.covers(path)) {
+            return chain.filter(exchange);
+        }
+        AdmissionControl.Decision decision = admissionControl.admit(request.getMethod().name(), path, clientOf(request));
+        if (!decision.admitted()) {
+            ServerHttpResponse response = exchange.getResponse();
+            response.setStatusCode(decision.rejection());
+            response.getHeaders().set("Retry-After", decision.retryAfterSeconds());
+            return response.setComplete();
+        }
+        return chain.filter(exchange).doFinally(signal -> admissionControl.release());
+    }
+
+    private String clientOf(ServerHttpRequest request) {
+        String clientHeader = admissionControl.clientHeader();
+        if (!clientHeader.isEmpty()) {
+            String client = request.getHeaders().getFirst(clientHeader);
+            if (client != null && !client.isEmpty()) {
+                return client;
+            }
+        }
+        InetSocketAddress remoteAddress = request.getRemoteAddress();
+        return remoteAddress == null ? "unknown" : remoteAddress.getHostString();
+    }
+}
+
+// ==================== USER WRITE BATCHER ====================
+// Optional group-commit write path. Creates and updates are queued; a single writer thread
+// drains them in micro-batches (up to max-batch-size, waiting at most max-batch-delay after
+// the first request) and applies each batch in one transaction, so one commit is paid per
+// batch instead of per request. Each caller's future completes only after the commit, with
+// its own saved user or its own not-found/conflict outcome. In schema-per-tenant mode a batch
+// is split by the tenant captured at submit time, one transaction per tenant.
+@Component
+@ConditionalOnProperty(name = "users.write.batching.enabled", havingValue = "true")
+class UserWriteBatcher {
+
+    private static final class WriteRequest {
+        private final Long id;
+        private final User user;
+        private final String tenantId = TenantContext.get();
+        private final CompletableFuture<User> result = new CompletableFuture<>();
+        private User saved;
+        private RuntimeException failure;
+
+        WriteRequest(Long id, User user) {
+            this.id = id;
+            this.user = user;
+        }
+
+        void complete() {
+            if (failure != null) {
+                result.completeExceptionally(failure);
+            } else {
+                result.complete(saved);
+            }
+        }
+    }
+
+    private final UserService userService;
+    private final TransactionTemplate transactionTemplate;
+    private final BlockingQueue<WriteRequest> queue;
+    private final int maxBatchSize;
+    private final long maxBatchDelayNanos;
+    private final Duration awaitTimeout;
+    private final DistributionSummary batchSizes;
+    private final Thread writer;
+    private volatile boolean running = true;
+
+    @Autowired
+    public UserWriteBatcher(UserService userService, PlatformTransactionManager transactionManager,
+                            @Value("${users.write.batching.queue-capacity:10000}") int queueCapacity,
+                            @Value("${users.write.batching.max-batch-size:64}") int maxBatchSize,
+                            @Value("${users.write.batching.max-batch-delay:5ms}") Duration maxBatchDelay,
+                            @Value("${users.write.batching.await-timeout:5s}") Duration awaitTimeout,
+                            MeterRegistry meterRegistry) {
+        this.userService = userService;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.maxBatchSize = maxBatchSize;
+        this.maxBatchDelayNanos = maxBatchDelay.toNanos();
+        this.awaitTimeout = awaitTimeout;
+        this.batchSizes = meterRegistry.summary("users.write.batch.size");
+        this.writer = new Thread(this::drainLoop, "user-write-batcher");
+        this.writer.setDaemon(true);
+    }
+
+    @PostConstruct
+    public void start() {
+        writer.start();
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        running = false;
+        writer.join(TimeUnit.SECONDS.toMillis(10));
+    }
+
+    // How long a caller should wait for its write to commit
+    public Duration awaitTimeout() {
+        return awaitTimeout;
+    }
+
+    public CompletableFuture<User> submitCreate(User user) {
+        return submit(new WriteRequest(null, user));
+    }
+
+    public CompletableFuture<User> submitUpdate(Long id, User userDetails) {
+        return submit(new WriteRequest(id, userDetails));
+    }
+
+    private CompletableFuture<User> submit(WriteRequest request) {
+        if (!running || !queue.offer(request)) {
+            request.result.completeExceptionally(new WriteQueueFullException());
+        }
+        return request.result;
+    }
+
+    private void drainLoop() {
+        List<WriteRequest> batch = new ArrayList<>(maxBatchSize);
+        while (running || !queue.isEmpty()) {
+            try {
+                WriteRequest first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                long deadline = System.nanoTime() + maxBatchDelayNanos;
+                while (batch.size() < maxBatchSize) {
+                    queue.drainTo(batch, maxBatchSize - batch.size());
+                    long remaining = deadline - System.nanoTime();
+                    if (batch.size() >= maxBatchSize || remaining <= 0) {
+                        break;
+                    }
+                    WriteRequest next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+                commitByTenant(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                batch.forEach(request -> request.result.completeExceptionally(new WriteQueueFullException()));
+                return;
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    private void commitByTenant(List<WriteRequest> batch) {
+        Map<String, List<WriteRequest>> byTenant = new LinkedHashMap<>();
+        for (WriteRequest request : batch) {
+            byTenant.computeIfAbsent(request.tenantId, tenantId -> new ArrayList<>()).add(request);
+        }
+        try {
+            byTenant.forEach((tenantId, requests) -> {
+                TenantContext.set(tenantId);
+                commit(requests);
+            });
+        } finally {
+            TenantContext.clear();
+        }
+    }
+
+    private void commit(List<WriteRequest> batch) {
+        batchSizes.record(batch.size());
+        try {
+            transactionTemplate.executeWithoutResult(status -> batch.forEach(this::apply));
+        } catch (RuntimeException e) {
+            // The batch rolled back as a whole, e.g. a constraint violation that slipped past the
+            // existence checks. Replay each request in its own transaction so only the culprit fails.
+            for (WriteRequest request : batch) {
+                try {
+                    transactionTemplate.executeWithoutResult(status -> apply(request));
+                } catch (RuntimeException replayFailure) {
+                    request.saved = null;
+                    request.failure = asConflict(request, replayFailure);
+                }
+            }
+        }
+        batch.forEach(WriteRequest::complete);
+    }
+
+    private void apply(WriteRequest request) {
+        request.saved = null;
+        request.failure = null;
+        try {
+            request.saved = request.id == null
+                ? userService.createUser(newUserFrom(request.user))
+                : userService.updateUser(request.id, request.user);
+        } catch (UserServiceException e) {
+            request.failure = e;
+        }
+    }
+
+    // A rolled-back IDENTITY insert leaves its id on the entity, and saving it again would merge
+    // a detached row instead of inserting one, so every attempt persists a fresh instance
+    private static User newUserFrom(User user) {
+        User copy = new User(user.getUsername(), user.getEmail(), user.getFirstName(), user.getLastName());
+        copy.setCreatedAt(user.getCreatedAt());
+        copy.setUpdatedAt(user.getUpdatedAt());
+        return copy;
+    }
+
+    // A unique-index violation on replay is a concurrent write that won the race, i.e. a conflict
+    private static RuntimeException asConflict(WriteRequest request, RuntimeException failure) {
+        UserConflictException conflict = failure instanceof DataIntegrityViolationException
+            ? UserConflictException.fromUniqueViolation(failure, request.user.getUsername(), request.user.getEmail())
+            : null;
+        return conflict != null ? conflict : failure;
+    }
+}
+
+// ==================== SAMPLED SQL LOGGING ====================
+// Production replacement for spring.jpa.show-sql: logs a random fraction of statements so
+// query shapes stay visible without paying for every one. Slow statements are logged
+// separately by Hibernate (hibernate.log_slow_query).
+class SampledSqlStatementInspector implements StatementInspector {
+    private static final Logger log = LoggerFactory.getLogger("com.example.flywaydemo.SQL_SAMPLE");
+
+    private final double sampleRate;
+
+    public SampledSqlStatementInspector(double sampleRate) {
+        this.sampleRate = sampleRate;
+    }
+
+    @Override
+    public String inspect(String sql) {
+        if (shouldSample() && log.isInfoEnabled()) {
+            log.info("sql={}", sql);
+        }
+        return sql;
+    }
+
+    boolean shouldSample() {
+        return sampleRate >= 1.0 || (sampleRate > 0 && ThreadLocalRandom.current().nextDouble() < sampleRate);
+    }
+}
+
+@Configuration
+class SqlLoggingConfiguration {
+
+    @Bean
+    @ConditionalOnProperty(name = "users.logging.sql.sample-rate")
+    public HibernatePropertiesCustomizer sampledSqlLoggingCustomizer(
+            @Value("${users.logging.sql.sample-rate}") double sampleRate) {
+        return properties -> properties.put(AvailableSettings.STATEMENT_INSPECTOR,
+            new SampledSqlStatementInspector(sampleRate));
+    }
+}
+
+// ==================== SLOW QUERY CAPTURE ====================
+// JDBC-level latency tracking for every statement that goes through the application DataSource
+// (JPA, JdbcTemplate and Flyway alike). Statements are grouped by a normalized fingerprint
+// (literals and bind lists collapsed) into log2 latency histograms. Executions over the
+// threshold also record their bind-parameter shape and, at most once per explain-refresh,
+// trigger an EXPLAIN on the raw DataSource, in the schema the statement ran in, so a plan
+// that falls back to a table scan shows up in GET /admin/slow-queries before anyone complains.
+// Only wired in with users.slow-query.enabled=true, since every JDBC call then goes through proxies.
+record SlowQueryReport(String fingerprint, long count, long slowCount, double meanMillis, double p50Millis,
+                       double p95Millis, double p99Millis, double maxMillis, List<String> parameterShapes,
+                       String plan, boolean tableScan, List<String> scannedTables, LocalDateTime lastSlowAt) {
+}
+
+class SlowQueryRecorder {
+    private static final Logger log = LoggerFactory.getLogger("com.example.flywaydemo.SLOW_QUERY");
+    private static final Pattern TABLE_SCAN = Pattern.compile("/\\*\\s*([\\w.\"]+)\\.tableScan");
+    private static final Pattern BIND_LIST = Pattern.compile("\\?(\\s*,\\s*\\?)+");
+    private static final String OVERFLOW = "(other statements)";
+    private static final int MAX_SHAPES = 5;
+    private static final Object NULL = new Object();
+
+    // Per-fingerprint state; buckets[i] counts executions of [2^i, 2^(i+1)) microseconds
+    static final class Stats {
+        private static final int BUCKETS = 26;
+
+        final String fingerprint;
+        private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+        private final LongAdder totalNanos = new LongAdder();
+        private final AtomicLong maxNanos = new AtomicLong();
+        private final LongAdder slowCount = new LongAdder();
+        private final Set<String> parameterShapes = ConcurrentHashMap.newKeySet();
+        private final AtomicLong explainDueAt = new AtomicLong(Long.MIN_VALUE);
+        private volatile String plan;
+        private volatile List<String> scannedTables = List.of();
+        private volatile LocalDateTime lastSlowAt;
+
+        Stats(String fingerprint) {
+            this.fingerprint = fingerprint;
+        }
+
+        void record(long nanos) {
+            long micros = Math.max(1, nanos / 1_000);
+            buckets.incrementAndGet(Math.min(BUCKETS - 1, 63 - Long.numberOfLeadingZeros(micros)));
+            totalNanos.add(nanos);
+            maxNanos.accumulateAndGet(nanos, Math::max);
+        }
+
+        long count() {
+            long count = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                count += buckets.get(i);
+            }
+            return count;
+        }
+
+        // Upper bound of the bucket holding the percentile, capped at the observed maximum
+        double percentileMillis(double percentile) {
+            long count = count();
+            long rank = (long) Math.ceil(percentile / 100.0 * count);
+            long seen = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                seen += buckets.get(i);
+                if (seen >= rank && seen > 0) {
+                    return Math.min(1L << (i + 1), maxNanos.get() / 1_000) / 1_000.0;
+                }
+            }
+            return 0;
+        }
+
+        SlowQueryReport report() {
+            long count = count();
+            return new SlowQueryReport(fingerprint, count, slowCount.sum(),
+                count == 0 ? 0 : totalNanos.sum() / 1_000_000.0 / count, percentileMillis(50), percentileMillis(95),
+                percentileMillis(99), maxNanos.get() / 1_000_000.0, List.copyOf(parameterShapes), plan,
+                !scannedTables.isEmpty(), scannedTables, lastSlowAt);
+        }
+    }
+
+    private final long thresholdNanos;
+    private final int maxFingerprints;
+    private final long explainRefreshNanos;
+    private final Map<String, String> fingerprints = new ConcurrentHashMap<>();
+    private final Map<String, Stats> stats = new ConcurrentHashMap<>();
+    private final ThreadPoolExecutor explainer;
+
+    SlowQueryRecorder(Duration threshold, int maxFingerprints, Duration explainRefresh) {
+        this.thresholdNanos = threshold.toNanos();
+        this.maxFingerprints = maxFingerprints;
+        this.explainRefreshNanos = explainRefresh.toNanos();
+        // One background connection at most; plans requested while the queue is full are retried
+        // on the fingerprint's next slow execution
+        this.explainer = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(64), runnable -> {
+            Thread thread = new Thread(runnable, "slow-query-explain");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    static Object nullParameter() {
+        return NULL;
+    }
+
+    // executedOn is the connection that ran the statement, still open; its schema is where the
+    // statement's unqualified table names resolved, e.g. a tenant schema
+    void record(String sql, Object[] parameters, long nanos, @Nullable Connection executedOn, DataSource explainSource) {
+        if (sql == null) {
+            return;
+        }
+        Stats entry = statsFor(sql);
+        entry.record(nanos);
+        if (nanos < thresholdNanos) {
+            return;
+        }
+        entry.slowCount.increment();
+        entry.lastSlowAt = LocalDateTime.now();
+        if (entry.parameterShapes.size() < MAX_SHAPES) {
+            entry.parameterShapes.add(shapeOf(parameters));
+        }
+        long now = System.nanoTime();
+        long due = entry.explainDueAt.get();
+        if (entry != stats.get(OVERFLOW) && (due == Long.MIN_VALUE || now - due >= 0)
+                && entry.explainDueAt.compareAndSet(due, now + explainRefreshNanos)) {
+            Object[] values = parameters.clone();
+            String schema = schemaOf(executedOn);
+            try {
+                explainer.execute(() -> explain(entry, sql, values, schema, explainSource));
+            } catch (RejectedExecutionException e) {
+                entry.explainDueAt.set(due);
+            }
+        }
+    }
+
+    List<SlowQueryReport> report(boolean includeFast) {
+        return stats.values().stream()
+            .filter(entry -> includeFast || entry.slowCount.sum() > 0)
+            .sorted(Comparator.comparing((Stats entry) -> entry.scannedTables.isEmpty())
+                .thenComparing(entry -> -entry.totalNanos.sum()))
+            .map(Stats::report)
+            .toList();
+    }
+
+    void reset() {
+        stats.clear();
+    }
+
+    void shutdown() {
+        explainer.shutdownNow();
+    }
+
+    private Stats statsFor(String sql) {
+        String fingerprint = fingerprints.get(sql);
+        if (fingerprint == null) {
+            fingerprint = fingerprint(sql);
+            // Statements with inline literals never repeat verbatim; only cache what fits
+            if (fingerprints.size() < maxFingerprints * 4) {
+                fingerprints.put(sql, fingerprint);
+            }
+        }
+        Stats entry = stats.get(fingerprint);
+        if (entry != null) {
+            return entry;
+        }
+        String key = stats.size() < maxFingerprints ? fingerprint : OVERFLOW;
+        return stats.computeIfAbsent(key, Stats::new);
+    }
+
+    private static String schemaOf(@Nullable Connection connection) {
+        try {
+            return connection != null ? connection.getSchema() : null;
+        } catch (SQLException e) {
+            return null;
+        }
+    }
+
+    // The pooled connection is switched to the statement's schema and back before it is returned
+    private void explain(Stats entry, String sql, Object[] values, @Nullable String schema, DataSource explainSource) {
+        String verb = sql.stripLeading().toLowerCase(Locale.ROOT);
+        if (!verb.startsWith("select") && !verb.startsWith("update") && !verb.startsWith("delete")) {
+            return;
+        }
+        try (Connection connection = explainSource.getConnection()) {
+            String originalSchema = connection.getSchema();
+            StringBuilder plan = new StringBuilder();
+            try {
+                if (schema != null) {
+                    connection.setSchema(schema);
+                }
+                try (PreparedStatement statement = connection.prepareStatement("EXPLAIN " + sql)) {
+                    for (int i = 0; i < values.length; i++) {
+                        statement.setObject(i + 1, values[i] == NULL ? null : values[i]);
+                    }
+                    try (ResultSet rs = statement.executeQuery()) {
+                        while (rs.next()) {
+                            plan.append(rs.getString(1)).append('\n');
+                        }
+                    }
+                }
+            } finally {
+                if (schema != null) {
+                    connection.setSchema(originalSchema);
+                }
+            }
+            List<String> scanned = new ArrayList<>();
+            Matcher matcher = TABLE_SCAN.matcher(plan);
+            while (matcher.find()) {
+                scanned.add(matcher.group(1).replace("\"", ""));
+            }
+            entry.plan = plan.toString().strip();
+            entry.scannedTables = List.copyOf(scanned);
+            if (!scanned.isEmpty()) {
+                log.warn("Slow statement scans {} without an index: {}", scanned, entry.fingerprint);
+            }
+        } catch (SQLException e) {
+            entry.plan = "EXPLAIN failed: " + e.getMessage();
+        }
+    }
+
+    // Replaces string and numeric literals with ?, collapses bind lists and whitespace, lower-cases the rest
+    static String fingerprint(String sql) {
+        StringBuilder out = new StringBuilder(sql.length());
+        int length = sql.length();
+        for (int i = 0; i < length; i++) {
+            char c = sql.charAt(i);
+            if (c == '\'') {
+                i++;
+                while (i < length && (sql.charAt(i) != '\'' || (i + 1 < length && sql.charAt(i + 1) == '\''))) {
+                    i += sql.charAt(i) == '\'' ? 2 : 1;
+                }
+                out.append('?');
+            } else if (Character.isDigit(c) && (out.isEmpty() || !isIdentifierPart(out.charAt(out.length() - 1)))) {
+                while (i + 1 < length && (Character.isDigit(sql.charAt(i + 1)) || sql.charAt(i + 1) == '.')) {
+                    i++;
+                }
+                out.append('?');
+            } else if (Character.isWhitespace(c)) {
+                if (!out.isEmpty() && out.charAt(out.length() - 1) != ' ') {
+                    out.append(' ');
+                }
+            } else {
+                out.append(Character.toLowerCase(c));
+            }
+        }
+        return BIND_LIST.matcher(out.toString().strip()).replaceAll("?+");
+    }
+
+    private static boolean isIdentifierPart(char c) {
+        return Character.isLetterOrDigit(c) || c == '_' || c == '"';
+    }
+
+    static String shapeOf(Object[] parameters) {
+        StringJoiner shape = new StringJoiner(", ", "(", ")");
+        for (Object value : parameters) {
+            shape.add(value == null ? "unset" : value == NULL ? "null" : value.getClass().getSimpleName());
+        }
+        return shape.toString();
+    }
+}
+
+// Wraps connections and statements in JDK proxies that time execute* calls and remember the
+// bind parameters of prepared statements
+class SlowQueryDataSource extends DelegatingDataSource {
+    private final SlowQueryRecorder recorder;
+
+    SlowQueryDataSource(DataSource target, SlowQueryRecorder recorder) {
+        super(target);
+        this.recorder = recorder;
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        return wrapConnection(super.getConnection());
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        return wrapConnection(super.getConnection(username, password));
+    }
+
+    private Connection wrapConnection(Connection connection) {
+        return (Connection) Proxy.newProxyInstance(SlowQueryDataSource.class.getClassLoader(),
+            new Class<?>[] {Connection.class}, (proxy, method, args) -> {
+                Object identity = identityMethod(proxy, method, args);
+                if (identity != null) {
+                    return identity;
+                }
+                Object result = invokeTarget(connection, method, args);
+                String name = method.getName();
+                if (result instanceof Statement statement
+                        && (name.startsWith("prepare") || name.equals("createStatement"))) {
+                    String sql = name.startsWith("prepare") ? (String) args[0] : null;
+                    return wrapStatement(statement, sql, connection);
+                }
+                return result;
+            });
+    }
+
+    private Statement wrapStatement(Statement statement, String sql, Connection connection) {
+        Class<?> type = statement instanceof CallableStatement ? CallableStatement.class
+            : statement instanceof PreparedStatement ? PreparedStatement.class : Statement.class;
+        Object[][] parameters = {new Object[0]};
+        return (Statement) Proxy.newProxyInstance(SlowQueryDataSource.class.getClassLoader(), new Class<?>[] {type},
+            (proxy, method, args) -> {
+                Object identity = identityMethod(proxy, method, args);
+                if (identity != null) {
+                    return identity;
+                }
+                String name = method.getName();
+                if (name.startsWith("set") && args != null && args.length >= 2 && args[0] instanceof Integer index
+                        && index > 0) {
+                    if (index > parameters[0].length) {
+                        parameters[0] = Arrays.copyOf(parameters[0], Math.max(index, parameters[0].length * 2));
+                    }
+                    parameters[0][index - 1] = name.equals("setNull") || args[1] == null
+                        ? SlowQueryRecorder.nullParameter() : args[1];
+                } else if (name.equals("clearParameters")) {
+                    Arrays.fill(parameters[0], null);
+                } else if (name.startsWith("execute")) {
+                    String statementSql = sql != null ? sql
+                        : args != null && args.length > 0 && args[0] instanceof String text ? text : null;
+                    long start = System.nanoTime();
+                    try {
+                        return invokeTarget(statement, method, args);
+                    } finally {
+                        recorder.record(statementSql, trimmed(parameters[0]), System.nanoTime() - start,
+                            connection, getTargetDataSource());
+                    }
+                }
+                return invokeTarget(statement, method, args);
+            });
+    }
+
+    private static Object[] trimmed(Object[] parameters) {
+        int length = parameters.length;
+        while (length > 0 && parameters[length - 1] == null) {
+            length--;
+        }
+        return length == parameters.length ? parameters : Arrays.copyOf(parameters, length);
+    }
+
+    // Proxies must compare and hash by identity, not by the wrapped object
+    private static Object identityMethod(Object proxy, Method method, Object[] args) {
+        return switch (method.getName()) {
+            case "equals" -> args != null && args.length == 1 ? proxy == args[0] : null;
+            case "hashCode" -> method.getParameterCount() == 0 ? System.identityHashCode(proxy) : null;
+            default -> null;
+        };
+    }
+
+    private static Object invokeTarget(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+}
+
+@Configuration
+@ConditionalOnProperty(name = "users.slow-query.enabled", havingValue = "true")
+class SlowQueryConfiguration {
+
+    @Bean(destroyMethod = "shutdown")
+    public SlowQueryRecorder slowQueryRecorder(
+            @Value("${users.slow-query.threshold:50ms}") Duration threshold,
+            @Value("${users.slow-query.max-fingerprints:500}") int maxFingerprints,
+            @Value("${users.slow-query.explain-refresh:10m}") Duration explainRefresh) {
+        return new SlowQueryRecorder(threshold, maxFingerprints, explainRefresh);
+    }
+
+    // Static so the DataSource can be wrapped before regular beans are created
+    @Bean
+    public static BeanPostProcessor slowQueryDataSourcePostProcessor(ObjectProvider<SlowQueryRecorder> recorder) {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) {
+                if (bean instanceof DataSource dataSource && !(bean instanceof SlowQueryDataSource)) {
+                    return new SlowQueryDataSource(dataSource, recorder.getObject());
+                }
+                return bean;
+            }
+        };
+    }
+}
+
+@RestController
+@RequestMapping("/admin/slow-queries")
+@ConditionalOnProperty(name = "users.slow-query.enabled", havingValue = "true")
+class SlowQueryController {
+    private final SlowQueryRecorder slowQueryRecorder;
+
+    @Autowired
+    public SlowQueryController(SlowQueryRecorder slowQueryRecorder) {
+        this.slowQueryRecorder = slowQueryRecorder;
+    }
+
+    // GET /admin/slow-queries - Fingerprints with slow executions, table scans first (all=true includes fast ones)
+    @GetMapping
+    public List<SlowQueryReport> getSlowQueries(@RequestParam(defaultValue = "false") boolean all) {
+        return slowQueryRecorder.report(all);
+    }
+
+    // DELETE /admin/slow-queries - Reset histograms, e.g. after a deploy or migration
+    @DeleteMapping
+    public ResponseEntity<Void> reset() {
+        slowQueryRecorder.reset();
+        return ResponseEntity.noContent().build();
+    }
+}
+
+// ==================== USER STATS RECONCILER ====================
+// Rebuilds the hourly rollup from created_at (hot and archived users) one time window at a time, each window in
+// its own short transaction, so drift from out-of-band writes is repaired without a long
+// lock on the users table. Writes racing a window's recount are corrected on the next pass.
+// With tenancy, each migrated tenant's schema is rebuilt after PUBLIC.
+@Component
+class UserStatsReconciler {
+    private static final Logger log = LoggerFactory.getLogger(UserStatsReconciler.class);
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final Duration chunk;
+    private final TenantRegistry tenantRegistry;
+
+    @Autowired
+    public UserStatsReconciler(JdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager,
+                               @Value("${users.stats.reconcile.chunk:1d}") Duration chunk,
+                               @Nullable TenantRegistry tenantRegistry) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.chunk = chunk;
+        this.tenantRegistry = tenantRegistry;
+    }
+
+    @Scheduled(cron = "${users.stats.reconcile.cron:-}")
+    public void rebuild() {
+        TenantRegistry.forEachSchema(tenantRegistry, this::rebuildSchema);
+    }
+
+    private void rebuildSchema(String schema) {
+        List<LocalDateTime> range = jdbcTemplate.queryForObject(
+            "SELECT MIN(created_at), MAX(created_at) FROM " +
+            "(SELECT created_at FROM users UNION ALL SELECT created_at FROM users_archive) t",
+            (rs, rowNum) -> Arrays.asList(rs.getObject(1, LocalDateTime.class), rs.getObject(2, LocalDateTime.class)));
+        if (range.get(0) == null) {
+            jdbcTemplate.update("DELETE FROM user_signup_stats");
+            return;
+        }
+        LocalDateTime first = range.get(0).truncatedTo(ChronoUnit.DAYS);
+        LocalDateTime last = range.get(1);
+        jdbcTemplate.update("DELETE FROM user_signup_stats WHERE bucket_start < ? OR bucket_start > ?", first, last);
+
+        int windows = 0;
+        for (LocalDateTime start = first; !start.isAfter(last); start = start.plus(chunk)) {
+            LocalDateTime windowStart = start;
+            LocalDateTime windowEnd = start.plus(chunk);
+            transactionTemplate.executeWithoutResult(status -> {
+                jdbcTemplate.update("DELETE FROM user_signup_stats WHERE bucket_start >= ? AND bucket_start < ?",
+                    windowStart, windowEnd);
+                jdbcTemplate.update("INSERT INTO user_signup_stats (bucket_start, user_count) " +
+                    "SELECT DATE_TRUNC('HOUR', created_at), COUNT(*) FROM (" +
+                    "SELECT created_at FROM users WHERE created_at >= ? AND created_at < ? UNION ALL " +
+                    "SELECT created_at FROM users_archive WHERE created_at >= ? AND created_at < ?) t " +
+                    "GROUP BY DATE_TRUNC('HOUR', created_at)",
+                    windowStart, windowEnd, windowStart, windowEnd);
+            });
+            windows++;
+        }
+        log.info("Rebuilt signup statistics in {} from {} to {} in {} windows", schema, first, last, windows);
+    }
+}
+
+// ==================== USER ARCHIVER ====================
+// Background mover for the cold tier. Each run moves at most max-batches-per-run batches of
+// batch-size users, one short transaction per batch with a pause in between, so archiving
+// never holds locks on many hot rows or competes with request traffic for long. With tenancy,
+// each migrated tenant's schema gets its own budget of batches after PUBLIC.
+@Component
+@ConditionalOnProperty(name = "users.archive.enabled", havingValue = "true", matchIfMissing = true)
+class UserArchiver {
+    private static final Logger log = LoggerFactory.getLogger(UserArchiver.class);
+
+    private final UserArchiveRepository userArchiveRepository;
+    private final Duration inactiveAfter;
+    private final int batchSize;
+    private final Duration batchPause;
+    private final int maxBatchesPerRun;
+    private final Counter moved;
+    private final TenantRegistry tenantRegistry;
+
+    @Autowired
+    public UserArchiver(UserArchiveRepository userArchiveRepository,
+                        @Value("${users.archive.after:365d}") Duration inactiveAfter,
+                        @Value("${users.archive.batch-size:500}") int batchSize,
+                        @Value("${users.archive.batch-pause:100ms}") Duration batchPause,
+                        @Value("${users.archive.max-batches-per-run:100}") int maxBatchesPerRun,
+                        MeterRegistry meterRegistry,
+                        @Nullable TenantRegistry tenantRegistry) {
+        this.userArchiveRepository = userArchiveRepository;
+        this.inactiveAfter = inactiveAfter;
+        this.batchSize = batchSize;
+        this.batchPause = batchPause;
+        this.maxBatchesPerRun = maxBatchesPerRun;
+        this.moved = Counter.builder("users.archive.moved").register(meterRegistry);
+        this.tenantRegistry = tenantRegistry;
+    }
+
+    @Scheduled(fixedDelayString = "${users.archive.interval:PT10M}", initialDelayString = "${users.archive.interval:PT10M}")
+    public int archiveInactiveUsers() {
+        LocalDateTime cutoff = LocalDateTime.now().minus(inactiveAfter);
+        int[] total = {0};
+        TenantRegistry.forEachSchema(tenantRegistry, schema -> total[0] += archiveInactiveUsers(schema, cutoff));
+        return total[0];
+    }
+
+    private int archiveInactiveUsers(String schema, LocalDateTime cutoff) {
+        int total = 0;
+        for (int batch = 0; batch < maxBatchesPerRun; batch++) {
+            int archived = userArchiveRepository.archiveInactive(cutoff, batchSize);
+            total += archived;
+            moved.increment(archived);
+            if (archived < batchSize) {
+                break;
+            }
+            try {
+                Thread.sleep(batchPause.toMillis());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+        if (total > 0) {
+            log.info("Archived {} users in {} not updated since {}", total, schema, cutoff);
+        }
+        return total;
+    }
+}
+
+// ==================== DURABLE STORE MAINTENANCE ====================
+// Only active with the durable profile's file-backed H2. With WRITE_DELAY above zero, commits are
+// group-committed by the MVStore background writer, which also rewrites chunks whose fill rate
+// falls below AUTO_COMPACT_FILL_RATE. A periodic CHECKPOINT SYNC bounds how much committed work a
+// power loss can drop, and the store's fill rate and file size are published as gauges.
+@Component
+@ConditionalOnProperty(name = "users.durable.enabled", havingValue = "true")
+class DurableStoreMaintenance {
+    private static final Logger log = LoggerFactory.getLogger(DurableStoreMaintenance.class);
+
+    private final JdbcTemplate jdbcTemplate;
+    private final Timer checkpoints;
+    // Numeric info.* rows of INFORMATION_SCHEMA.SETTINGS as of the last checkpoint
+    private final Map<String, Double> storeInfo = new ConcurrentHashMap<>();
+
+    @Autowired
+    public DurableStoreMaintenance(JdbcTemplate jdbcTemplate, MeterRegistry meterRegistry) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.checkpoints = Timer.builder("users.durable.checkpoint").register(meterRegistry);
+        Gauge.builder("users.durable.fill-rate", storeInfo, info -> info.getOrDefault("info.FILL_RATE", Double.NaN))
+            .register(meterRegistry);
+        Gauge.builder("users.durable.chunks-fill-rate", storeInfo,
+                info -> info.getOrDefault("info.CHUNKS_FILL_RATE", Double.NaN))
+            .register(meterRegistry);
+        Gauge.builder("users.durable.file-size", storeInfo, info -> info.getOrDefault("info.FILE_SIZE", Double.NaN))
+            .baseUnit("bytes")
+            .register(meterRegistry);
+    }
+
+    @Scheduled(fixedDelayString = "${users.durable.checkpoint-interval:PT30S}",
+        initialDelayString = "${users.durable.checkpoint-interval:PT30S}")
+    public void checkpoint() {
+        checkpoints.record(() -> jdbcTemplate.execute("CHECKPOINT SYNC"));
+        for (Map<String, Object> row : jdbcTemplate.queryForList(
+                "SELECT SETTING_NAME, SETTING_VALUE FROM INFORMATION_SCHEMA.SETTINGS WHERE SETTING_NAME LIKE 'info.%'")) {
+            Object value = row.get("SETTING_VALUE");
+            try {
+                if (value != null) {
+                    storeInfo.put((String) row.get("SETTING_NAME"), Double.parseDouble(value.toString()));
+                }
+            } catch (NumberFormatException e) {
+                // non-numeric entries are not tracked
+            }
+        }
+        log.debug("Checkpointed durable store: fill rate {}%, file size {} bytes",
+            storeInfo.get("info.FILL_RATE"), storeInfo.get("info.FILE_SIZE"));
+    }
+}
+
+// ==================== USER DIRECTORY SNAPSHOT ====================
+// Versioned, fixed-layout binary image of the hot users table, read through a memory map so
+// a freshly started instance can answer lookups before its caches and the database warm up.
+// All numbers are big-endian; offsets are absolute file positions; a file is at most 2 GB.
+//
+//   header   magic, version, count, reserved (4 x int), watermark, written-at (2 x epoch micros),
+//            id index, username index, email index offsets (3 x long)
+//   records  id, created_at, updated_at (3 x long), username, email, first_name, last_name
+//            (each a short UTF-8 byte length, -1 for null, followed by the bytes)
+//   id index        count x (long id, int record offset), ascending id
+//   username index  count x long (String.hashCode() << 32 | record offset), ascending
+//   email index     same layout as the username index
+final class UserDirectorySnapshot {
+    static final int MAGIC = 0x55534E50; // "USNP"
+    static final int VERSION = 1;
+    static final int HEADER_SIZE = 56;
+    private static final int ID_ENTRY_SIZE = 12;
+    private static final long NULL_TIME = Long.MIN_VALUE;
+
+    private final ByteBuffer buffer;
+    private final int count;
+    private final LocalDateTime watermark;
+    private final LocalDateTime writtenAt;
+    private final int idIndex;
+    private final int usernameIndex;
+    private final int emailIndex;
+
+    private UserDirectorySnapshot(ByteBuffer buffer, int count, LocalDateTime watermark, LocalDateTime writtenAt,
+                                  int idIndex, int usernameIndex, int emailIndex) {
+        this.buffer = buffer;
+        this.count = count;
+        this.watermark = watermark;
+        this.writtenAt = writtenAt;
+        this.idIndex = idIndex;
+        this.usernameIndex = usernameIndex;
+        this.emailIndex = emailIndex;
+    }
+
+    // The mapping outlives the channel; it is released when the snapshot is garbage collected
+    static UserDirectorySnapshot open(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < HEADER_SIZE || size > Integer.MAX_VALUE) {
+                throw new IOException("Not a user directory snapshot: " + path);
+            }
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            if (buffer.getInt(0) != MAGIC) {
+                throw new IOException("Not a user directory snapshot: " + path);
+            }
+            if (buffer.getInt(4) != VERSION) {
+                throw new IOException("Unsupported user directory snapshot version " + buffer.getInt(4) + ": " + path);
+            }
+            int count = buffer.getInt(8);
+            long idIndex = buffer.getLong(32);
+            long usernameIndex = buffer.getLong(40);
+            long emailIndex = buffer.getLong(48);
+            if (count < 0 || idIndex < HEADER_SIZE || usernameIndex != idIndex + (long) count * ID_ENTRY_SIZE
+                    || emailIndex != usernameIndex + count * 8L || emailIndex + count * 8L != size) {
+                throw new IOException("Truncated or corrupt user directory snapshot: " + path);
+            }
+            return new UserDirectorySnapshot(buffer, count, fromMicros(buffer.getLong(16)), fromMicros(buffer.getLong(24)),
+                (int) idIndex, (int) usernameIndex, (int) emailIndex);
+        }
+    }
+
+    static SnapshotWriter writer(Path path) throws IOException {
+        return new SnapshotWriter(path);
+    }
+
+    int count() {
+        return count;
+    }
+
+    // Newest updated_at in the snapshot, or null when it holds no users
+    LocalDateTime watermark() {
+        return watermark;
+    }
+
+    LocalDateTime writtenAt() {
+        return writtenAt;
+    }
+
+    Optional<User> findById(long id) {
+        int low = 0;
+        int high = count - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int entry = idIndex + mid * ID_ENTRY_SIZE;
+            long midId = buffer.getLong(entry);
+            if (midId < id) {
+                low = mid + 1;
+            } else if (midId > id) {
+                high = mid - 1;
+            } else {
+                return Optional.of(readUser(buffer.getInt(entry + 8)));
+            }
+        }
+        return Optional.empty();
+    }
+
+    Optional<User> findByUsername(String username) {
+        return findByHash(usernameIndex, username, true);
+    }
+
+    Optional<User> findByEmail(String email) {
+        return findByHash(emailIndex, email, false);
+    }
+
+    // Binary search for the first entry with the value's hash, then compare the actual strings
+    // of every entry sharing that hash
+    private Optional<User> findByHash(int index, String value, boolean username) {
+        long hash = value.hashCode();
+        long first = hash << 32;
+        int low = 0;
+        int high = count;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (buffer.getLong(index + mid * 8) < first) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        for (int i = low; i < count; i++) {
+            long key = buffer.getLong(index + i * 8);
+            if ((key >> 32) != hash) {
+                break;
+            }
+            User user = readUser((int) key);
+            if (value.equals(username ? user.getUsername() : user.getEmail())) {
+                return Optional.of(user);
+            }
+        }
+        return Optional.empty();
+    }
+
+    private User readUser(int offset) {
+        String[] text = new String[4];
+        int position = offset + 24;
+        for (int i = 0; i < text.length; i++) {
+            short length = buffer.getShort(position);
+            position += 2;
+            if (length >= 0) {
+                byte[] bytes = new byte[length];
+                buffer.get(position, bytes);
+                text[i] = new String(bytes, StandardCharsets.UTF_8);
+                position += length;
+            }
+        }
+        User user = new User(text[0], text[1], text[2], text[3]);
+        user.setId(buffer.getLong(offset));
+        user.setCreatedAt(fromMicros(buffer.getLong(offset + 8)));
+        user.setUpdatedAt(fromMicros(buffer.getLong(offset + 16)));
+        return user;
+    }
+
+    static long toMicros(LocalDateTime time) {
+        return time == null ? NULL_TIME : time.toEpochSecond(ZoneOffset.UTC) * 1_000_000 + time.getNano() / 1_000;
+    }
+
+    static LocalDateTime fromMicros(long micros) {
+        return micros == NULL_TIME ? null : LocalDateTime.ofEpochSecond(Math.floorDiv(micros, 1_000_000),
+            (int) Math.floorMod(micros, 1_000_000) * 1_000, ZoneOffset.UTC);
+    }
+
+    // Streams records to a temp file next to the target, then appends the indexes, fills in the
+    // header and atomically replaces the target, so readers only ever see complete snapshots
+    static final class SnapshotWriter implements AutoCloseable {
+        private final Path target;
+        private final Path temp;
+        private final DataOutputStream out;
+        private long[] ids = new long[1024];
+        private int[] offsets = new int[1024];
+        private long[] usernameKeys = new long[1024];
+        private long[] emailKeys = new long[1024];
+        private int count;
+        private long watermark = NULL_TIME;
+        private boolean committed;
+
+        private SnapshotWriter(Path target) throws IOException {
+            this.target = target.toAbsolutePath();
+            Files.createDirectories(this.target.getParent());
+            this.temp = Files.createTempFile(this.target.getParent(), this.target.getFileName().toString(), ".tmp");
+            this.out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp), 1 << 16));
+            out.write(new byte[HEADER_SIZE]);
+        }
+
+        // Users must arrive in ascending id order (ORDER BY id)
+        void add(User user) throws IOException {
+            if (count > 0 && user.getId() <= ids[count - 1]) {
+                throw new IllegalArgumentException("Users must be added in ascending id order");
+            }
+            int offset = out.size();
+            if (offset > Integer.MAX_VALUE - 8192 - (count + 1) * 28L) {
+                throw new IOException("User directory snapshot would exceed 2 GB");
+            }
+            if (count == ids.length) {
+                int capacity = count * 2;
+                ids = Arrays.copyOf(ids, capacity);
+                offsets = Arrays.copyOf(offsets, capacity);
+                usernameKeys = Arrays.copyOf(usernameKeys, capacity);
+                emailKeys = Arrays.copyOf(emailKeys, capacity);
+            }
+            ids[count] = user.getId();
+            offsets[count] = offset;
+            usernameKeys[count] = (long) user.getUsername().hashCode() << 32 | offset;
+            emailKeys[count] = (long) user.getEmail().hashCode() << 32 | offset;
+            count++;
+
+            long updatedAt = toMicros(user.getUpdatedAt());
+            watermark = Math.max(watermark, updatedAt);
+            out.writeLong(user.getId());
+            out.writeLong(toMicros(user.getCreatedAt()));
+            out.writeLong(updatedAt);
+            writeString(user.getUsername());
+            writeString(user.getEmail());
+            writeString(user.getFirstName());
+            writeString(user.getLastName());
+        }
+
+        private void writeString(String value) throws IOException {
+            if (value == null) {
+                out.writeShort(-1);
+                return;
+            }
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            out.writeShort(bytes.length);
+            out.write(bytes);
+        }
+
+        void commit() throws IOException {
+            long idIndex = out.size();
+            for (int i = 0; i < count; i++) {
+                out.writeLong(ids[i]);
+                out.writeInt(offsets[i]);
+            }
+            long usernameIndex = writeSorted(usernameKeys);
+            long emailIndex = writeSorted(emailKeys);
+            out.close();
+
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE)
+                .putInt(MAGIC).putInt(VERSION).putInt(count).putInt(0)
+                .putLong(watermark).putLong(toMicros(LocalDateTime.now()))
+                .putLong(idIndex).putLong(usernameIndex).putLong(emailIndex)
+                .flip();
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+                channel.write(header, 0);
+                channel.force(true);
+            }
+            Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            committed = true;
+        }
+
+        private long writeSorted(long[] keys) throws IOException {
+            long position = out.size();
+            Arrays.sort(keys, 0, count);
+            for (int i = 0; i < count; i++) {
+                out.writeLong(keys[i]);
+            }
+            return position;
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (!committed) {
+                out.close();
+                Files.deleteIfExists(temp);
+            }
+        }
+    }
+}
+
+// ==================== USER DIRECTORY ====================
+// Read path in front of UserService lookups, backed by the newest snapshot plus the changes seen
+// since it was written. On boot the snapshot on disk is mapped (if younger than max-age) and
+// serves hits immediately; a catch-up poll on users.updated_at folds in rows changed after the
+// snapshot's watermark, and local writes, blocking or reactive, are applied after commit. Misses
+// always fall through to the database. Deletes made by other instances are only dropped at the
+// next rewrite, so users.snapshot.interval bounds how long such a user can still be served.
+@Component
+@ConditionalOnProperty(name = "users.snapshot.enabled", havingValue = "true")
+class UserDirectory {
+    private static final Logger log = LoggerFactory.getLogger(UserDirectory.class);
+    private static final String SELECT_USERS =
+        "SELECT id, username, email, first_name, last_name, created_at, updated_at FROM users";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final Path path;
+    private final Duration maxAge;
+    private final Duration catchUpOverlap;
+    private final Counter hits;
+    private final Counter misses;
+
+    private volatile UserDirectorySnapshot snapshot;
+    private volatile LocalDateTime watermark;
+    // Rows changed since the snapshot; they shadow the snapshot's copy of the same id
+    private final Map<Long, User> changed = new ConcurrentHashMap<>();
+    private final Map<String, Long> changedUsernames = new ConcurrentHashMap<>();
+    private final Map<String, Long> changedEmails = new ConcurrentHashMap<>();
+    // Deleted ids and when they were deleted (epoch millis)
+    private final Map<Long, Long> deleted = new ConcurrentHashMap<>();
+
+    @Autowired
+    public UserDirectory(JdbcTemplate jdbcTemplate,
+                         @Value("${users.snapshot.path:data/users-directory.snapshot}") String path,
+                         @Value("${users.snapshot.max-age:24h}") Duration maxAge,
+                         @Value("${users.snapshot.catch-up-overlap:5s}") Duration catchUpOverlap,
+                         MeterRegistry meterRegistry) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.path = Paths.get(path);
+        this.maxAge = maxAge;
+        this.catchUpOverlap = catchUpOverlap;
+        this.hits = Counter.builder("users.directory.lookups").tag("result", "hit").register(meterRegistry);
+        this.misses = Counter.builder("users.directory.lookups").tag("result", "miss").register(meterRegistry);
+    }
+
+    @PostConstruct
+    public void load() {
+        if (!Files.exists(path)) {
+            log.info("No user directory snapshot at {}, starting cold", path);
+            return;
+        }
+        long start = System.nanoTime();
+        try {
+            UserDirectorySnapshot loaded = UserDirectorySnapshot.open(path);
+            if (loaded.writtenAt().isBefore(LocalDateTime.now().minus(maxAge))) {
+                log.info("Ignoring user directory snapshot written at {}, older than {}", loaded.writtenAt(), maxAge);
+                return;
+            }
+            install(loaded);
+            log.info("Mapped user directory snapshot with {} users in {} ms", loaded.count(),
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        } catch (IOException e) {
+            log.warn("Ignoring unreadable user directory snapshot {}: {}", path, e.toString());
+        }
+    }
+
+    // Writes a fresh snapshot on shutdown so the next boot starts from current data
+    @PreDestroy
+    public void close() {
+        writeSnapshot();
+    }
+
+    @Scheduled(fixedDelayString = "${users.snapshot.interval:PT15M}", initialDelayString = "${users.snapshot.interval:PT15M}")
+    public synchronized void writeSnapshot() {
+        long startedAt = System.currentTimeMillis();
+        try (UserDirectorySnapshot.SnapshotWriter writer = UserDirectorySnapshot.writer(path)) {
+            jdbcTemplate.query(SELECT_USERS + " ORDER BY id", rs -> {
+                try {
+                    writer.add(toUser(rs));
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+            writer.commit();
+        } catch (IOException | UncheckedIOException | DataAccessException e) {
+            log.warn("Could not write user directory snapshot {}: {}", path, e.toString());
+            return;
+        }
+        try {
+            UserDirectorySnapshot written = UserDirectorySnapshot.open(path);
+            install(written);
+            // Changes and deletes the new snapshot already reflects no longer need to shadow it
+            LocalDateTime covered = watermark.minus(catchUpOverlap);
+            changed.values().removeIf(user -> user.getUpdatedAt() != null && user.getUpdatedAt().isBefore(covered));
+            changedUsernames.values().removeIf(id -> !changed.containsKey(id));
+            changedEmails.values().removeIf(id -> !changed.containsKey(id));
+            deleted.values().removeIf(deletedAt -> deletedAt < startedAt);
+            log.info("Wrote user directory snapshot with {} users in {} ms", written.count(),
+                System.currentTimeMillis() - startedAt);
+        } catch (IOException e) {
+            log.warn("Could not map user directory snapshot {}: {}", path, e.toString());
+        }
+    }
+
+    // Folds in rows changed after the watermark; the overlap re-reads rows whose transactions
+    // committed after a later updated_at had already been seen
+    @Scheduled(fixedDelayString = "${users.snapshot.catch-up-interval:PT5S}")
+    public void catchUp() {
+        LocalDateTime since = watermark;
+        if (snapshot == null) {
+            return;
+        }
+        LocalDateTime[] newest = {since};
+        jdbcTemplate.query(SELECT_USERS + " WHERE updated_at > ?", rs -> {
+            User user = toUser(rs);
+            record(user);
+            if (user.getUpdatedAt().isAfter(newest[0])) {
+                newest[0] = user.getUpdatedAt();
+            }
+        }, since.minus(catchUpOverlap));
+        watermark = newest[0];
+    }
+
+    public Optional<User> findById(Long id) {
+        UserDirectorySnapshot current = snapshot;
+        if (current == null || deleted.containsKey(id)) {
+            return miss();
+        }
+        User user = changed.get(id);
+        return user != null ? hit(user) : known(current.findById(id));
+    }
+
+    public Optional<User> findByUsername(String username) {
+        UserDirectorySnapshot current = snapshot;
+        if (current == null) {
+            return miss();
+        }
+        Long id = changedUsernames.get(username);
+        User user = id != null ? changed.get(id) : null;
+        if (user != null && username.equals(user.getUsername()) && !deleted.containsKey(id)) {
+            return hit(user);
+        }
+        return known(current.findByUsername(username));
+    }
+
+    public Optional<User> findByEmail(String email) {
+        UserDirectorySnapshot current = snapshot;
+        if (current == null) {
+            return miss();
+        }
+        Long id = changedEmails.get(email);
+        User user = id != null ? changed.get(id) : null;
+        if (user != null && email.equals(user.getEmail()) && !deleted.containsKey(id)) {
+            return hit(user);
+        }
+        return known(current.findByEmail(email));
+    }
+
+    // Applied once the surrounding transaction commits, so rolled-back writes are never served
+    public void put(User user) {
+        User copy = copyOf(user);
+        afterCommit(() -> record(copy));
+    }
+
+    // Applied once the delete commits, stamped with the commit time: a rolled-back delete leaves no
+    // tombstone, and a snapshot rewrite that started before the commit cannot drop it
+    public void remove(Long id) {
+        afterCommit(() -> {
+            deleted.put(id, System.currentTimeMillis());
+            changed.remove(id);
+        });
+    }
+
+    // The watermark is set first: catch-up only runs once a snapshot is visible
+    private void install(UserDirectorySnapshot loaded) {
+        watermark = loaded.watermark() != null ? loaded.watermark() : loaded.writtenAt();
+        snapshot = loaded;
+    }
+
+    // A snapshot record is stale once the same id has changed or been deleted since
+    private Optional<User> known(Optional<User> fromSnapshot) {
+        if (fromSnapshot.isEmpty() || changed.containsKey(fromSnapshot.get().getId())
+                || deleted.containsKey(fromSnapshot.get().getId())) {
+            return miss();
+        }
+        hits.increment();
+        return fromSnapshot;
+    }
+
+    private Optional<User> hit(User user) {
+        hits.increment();
+        return Optional.of(copyOf(user));
+    }
+
+    private Optional<User> miss() {
+        misses.increment();
+        return Optional.empty();
+    }
+
+    // Keeps the newer of two versions when catch-up and a local write race on the same id
+    private void record(User user) {
+        User current = changed.merge(user.getId(), user, (existing, incoming) ->
+            existing.getUpdatedAt() != null && incoming.getUpdatedAt() != null
+                && existing.getUpdatedAt().isAfter(incoming.getUpdatedAt()) ? existing : incoming);
+        changedUsernames.put(current.getUsername(), current.getId());
+        changedEmails.put(current.getEmail(), current.getId());
+    }
+
+    private static void afterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+
+    private static User copyOf(User user) {
+        User copy = new User(user.getUsername(), user.getEmail(), user.getFirstName(), user.getLastName());
+        copy.setId(user.getId());
+        copy.setCreatedAt(user.getCreatedAt());
+        copy.setUpdatedAt(user.getUpdatedAt());
+        return copy;
+    }
+
+    private static User toUser(ResultSet rs) throws SQLException {
+        User user = new User(rs.getString("username"), rs.getString("email"),
+            rs.getString("first_name"), rs.getString("last_name"));
+        user.setId(rs.getLong("id"));
+        user.setCreatedAt(rs.getObject("created_at", LocalDateTime.class));
+        user.setUpdatedAt(rs.getObject("updated_at", LocalDateTime.class));
+        return user;
+    }
+}
+
+// ==================== MULTI-TENANCY ====================
+// Schema-per-tenant mode (users.tenancy.enabled). Requests under /api carry a tenant id header,
+// and every connection handed out while a request runs is switched to that tenant's schema.
+// JPA and the JdbcTemplate repositories therefore follow the tenant without knowing about it.
+// Background jobs run without a tenant for the default PUBLIC schema, then once per migrated
+// tenant through TenantRegistry.forEachSchema.
+final class TenantContext {
+    private static final ThreadLocal<String> CURRENT = new ThreadLocal<>();
+
+    private TenantContext() {
+    }
+
+    @Nullable
+    static String get() {
+        return CURRENT.get();
+    }
+
+    static void set(@Nullable String tenantId) {
+        if (tenantId == null) {
+            CURRENT.remove();
+        } else {
+            CURRENT.set(tenantId);
+        }
+    }
+
+    static void clear() {
+        CURRENT.remove();
+    }
+
+    // Unquoted H2 identifiers are upper case, so Flyway and SET SCHEMA agree on the name
+    static String schemaOf(@Nullable String tenantId) {
+        return tenantId == null ? "PUBLIC" : "TENANT_" + tenantId.toUpperCase(Locale.ROOT);
+    }
+}
+
+// The pool is shared by all tenants; the schema is set on every checkout because a pooled
+// connection may still point at the schema of its previous borrower (or of a Flyway run)
+class TenantRoutingDataSource extends DelegatingDataSource {
+
+    TenantRoutingDataSource(DataSource targetDataSource) {
+        super(targetDataSource);
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        return route(super.getConnection());
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        return route(super.getConnection(username, password));
+    }
+
+    private static Connection route(Connection connection) throws SQLException {
+        try {
+            connection.setSchema(TenantContext.schemaOf(TenantContext.get()));
+            return connection;
+        } catch (SQLException e) {
+            connection.close();
+            throw e;
+        }
+    }
+}
+
+record TenantStatus(String tenantId, String schema, String state, String version, int migrationsApplied,
+                    long migrationMillis, long allocatedBytes, String error) {
+}
+
+record TenantReport(String mode, int workers, long bootMillis, long eagerMigrationMillis, int tenants, long ready,
+                    long failed, long averageAllocatedBytes, long heapGrowthPerTenantBytes, List<TenantStatus> details) {
+}
+
+// Known tenants come from users.tenancy.tenants plus existing TENANT_* schemas. Each one is
+// migrated with its own Flyway run on a bounded worker pool: all of them at boot (eager) or
+// on a tenant's first request (lazy). The outcome is cached as a future per tenant, so a
+// migrated tenant never reads its schema history again until restart. Memory overhead is
+// measured as bytes allocated by each migration and heap growth across the eager phase.
+@Component
+@ConditionalOnProperty(name = "users.tenancy.enabled", havingValue = "true")
+class TenantRegistry {
+    private static final Logger log = LoggerFactory.getLogger(TenantRegistry.class);
+    private static final Pattern TENANT_ID = Pattern.compile("[a-z0-9_]{1,48}");
+
+    private static final class Tenant {
+        private final String id;
+        private final String schema;
+        private volatile CompletableFuture<Void> ready;
+        private volatile String version;
+        private volatile int migrationsApplied;
+        private volatile long migrationMillis = -1;
+        private volatile long allocatedBytes = -1;
+        private volatile String error;
+
+        Tenant(String id) {
+            this.id = id;
+            this.schema = TenantContext.schemaOf(id);
+        }
+
+        String state() {
+            CompletableFuture<Void> current = ready;
+            if (current == null) {
+                return "PENDING";
+            }
+            if (!current.isDone()) {
+                return "MIGRATING";
+            }
+            return current.isCompletedExceptionally() ? "FAILED" : "READY";
+        }
+
+        TenantStatus status() {
+            return new TenantStatus(id, schema, state(), version, migrationsApplied, migrationMillis, allocatedBytes,
+                error);
+        }
+    }
+
+    private final DataSource dataSource;
+    private final JdbcTemplate jdbcTemplate;
+    private final String[] locations;
+    private final boolean eager;
+    private final List<String> configuredTenants;
+    private final boolean discover;
+    private final int workers;
+    private final ThreadPoolExecutor migrationPool;
+    private final ConcurrentHashMap<String, Tenant> tenants = new ConcurrentHashMap<>();
+    private volatile long eagerMigrationMillis = -1;
+    private volatile long heapGrowthPerTenantBytes = -1;
+    private volatile long bootMillis = -1;
+
+    @Autowired
+    public TenantRegistry(DataSource dataSource, JdbcTemplate jdbcTemplate,
+                          @Nullable UserDirectory userDirectory,
+                          @Nullable ReactiveUserService reactiveUserService,
+                          @Value("${spring.flyway.locations:classpath:db/migration}") String[] locations,
+                          @Value("${users.tenancy.migrate:eager}") String migrate,
+                          @Value("${users.tenancy.tenants:}") List<String> configuredTenants,
+                          @Value("${users.tenancy.discover:true}") boolean discover,
+                          @Value("${users.tenancy.migration-threads:4}") int workers) {
+        // Both keep state outside the routed JDBC connections and would mix tenants
+        if (userDirectory != null) {
+            throw new IllegalStateException("users.tenancy.enabled requires users.snapshot.enabled=false");
+        }
+        if (reactiveUserService != null) {
+            throw new IllegalStateException("users.tenancy.enabled requires users.reactive.enabled=false");
+        }
+        if (!migrate.equals("eager") && !migrate.equals("lazy")) {
+            throw new IllegalArgumentException("users.tenancy.migrate must be eager or lazy: " + migrate);
+        }
+        this.dataSource = dataSource;
+        this.jdbcTemplate = jdbcTemplate;
+        this.locations = locations;
+        this.eager = migrate.equals("eager");
+        this.configuredTenants = configuredTenants;
+        this.discover = discover;
+        this.workers = workers;
+        this.migrationPool = new ThreadPoolExecutor(workers, workers, 0, TimeUnit.MILLISECONDS,
+            new LinkedBlockingQueue<>(), runnable -> {
+                Thread thread = new Thread(runnable, "tenant-migration");
+                thread.setDaemon(true);
+                return thread;
+            });
+    }
+
+    @PostConstruct
+    public void start() {
+        for (String tenantId : configuredTenants) {
+            String normalized = tenantId.trim().toLowerCase(Locale.ROOT);
+            if (!normalized.isEmpty()) {
+                if (!isValidId(normalized)) {
+                    throw new IllegalArgumentException("Invalid tenant id in users.tenancy.tenants: " + tenantId);
+                }
+                tenants.computeIfAbsent(normalized, Tenant::new);
+            }
+        }
+        if (discover) {
+            jdbcTemplate.queryForList("SELECT SCHEMA_NAME FROM INFORMATION_SCHEMA.SCHEMATA " +
+                    "WHERE SCHEMA_NAME LIKE 'TENANT\\_%' ESCAPE '\\'", String.class).stream()
+                .map(schema -> schema.substring("TENANT_".length()).toLowerCase(Locale.ROOT))
+                .filter(TenantRegistry::isValidId)
+                .forEach(tenantId -> tenants.computeIfAbsent(tenantId, Tenant::new));
+        }
+        if (eager) {
+            MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+            long heapBefore = memory.getHeapMemoryUsage().getUsed();
+            long start = System.nanoTime();
+            CompletableFuture<?>[] migrations = tenants.values().stream()
+                .map(tenant -> migrate(tenant, false))
+                .toArray(CompletableFuture[]::new);
+            // Failures are recorded per tenant; their requests are refused, the others are served
+            CompletableFuture.allOf(migrations).exceptionally(e -> null).join();
+            eagerMigrationMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+            long heapGrowth = Math.max(0, memory.getHeapMemoryUsage().getUsed() - heapBefore);
+            heapGrowthPerTenantBytes = tenants.isEmpty() ? 0 : heapGrowth / tenants.size();
+        }
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onReady() {
+        bootMillis = ManagementFactory.getRuntimeMXBean().getUptime();
+        TenantReport report = report();
+        log.info("Tenancy ready in {} ms: {} tenants ({} ready, {} failed, {} migration), {} workers, " +
+                "eager migration {} ms, ~{} KB allocated and ~{} KB heap growth per tenant",
+            report.bootMillis(), report.tenants(), report.ready(), report.failed(), report.mode(), report.workers(),
+            report.eagerMigrationMillis(), report.averageAllocatedBytes() / 1024,
+            report.heapGrowthPerTenantBytes() / 1024);
+    }
+
+    @PreDestroy
+    public void stop() {
+        migrationPool.shutdownNow();
+    }
+
+    static boolean isValidId(@Nullable String tenantId) {
+        return tenantId != null && TENANT_ID.matcher(tenantId).matches();
+    }
+
+    // Runs a background job for PUBLIC, then with each migrated tenant bound, so its routed
+    // connections use that tenant's schema. Pending and failed tenants are picked up once ready.
+    static void forEachSchema(@Nullable TenantRegistry tenantRegistry, Consumer<String> job) {
+        List<String> tenantIds = new ArrayList<>();
+        tenantIds.add(null);
+        if (tenantRegistry != null) {
+            tenantRegistry.tenants.values().stream()
+                .filter(tenant -> tenant.state().equals("READY"))
+                .map(tenant -> tenant.id)
+                .sorted()
+                .forEach(tenantIds::add);
+        }
+        String previous = TenantContext.get();
+        try {
+            for (String tenantId : tenantIds) {
+                TenantContext.set(tenantId);
+                job.accept(TenantContext.schemaOf(tenantId));
+            }
+        } finally {
+            TenantContext.set(previous);
+        }
+    }
+
+    // Null for unknown tenants; otherwise completes once the tenant's schema is migrated,
+    // starting the migration if this is the tenant's first request
+    @Nullable
+    CompletableFuture<Void> ready(String tenantId) {
+        Tenant tenant = tenants.get(tenantId);
+        return tenant == null ? null : migrate(tenant, false);
+    }
+
+    boolean isKnown(String tenantId) {
+        return tenants.containsKey(tenantId);
+    }
+
+    // Adds a tenant, or retries one whose migration failed
+    CompletableFuture<Void> register(String tenantId) {
+        if (!isValidId(tenantId)) {
+            throw new IllegalArgumentException("Invalid tenant id: " + tenantId);
+        }
+        return migrate(tenants.computeIfAbsent(tenantId, Tenant::new), true);
+    }
+
+    TenantReport report() {
+        List<TenantStatus> details = tenants.values().stream()
+            .map(Tenant::status)
+            .sorted(Comparator.comparing(TenantStatus::tenantId))
+            .toList();
+        long ready = details.stream().filter(status -> status.state().equals("READY")).count();
+        long failed = details.stream().filter(status -> status.state().equals("FAILED")).count();
+        long averageAllocated = (long) details.stream()
+            .mapToLong(TenantStatus::allocatedBytes)
+            .filter(bytes -> bytes >= 0)
+            .average()
+            .orElse(-1);
+        return new TenantReport(eager ? "eager" : "lazy", workers, bootMillis, eagerMigrationMillis, details.size(),
+            ready, failed, averageAllocated, heapGrowthPerTenantBytes, details);
+    }
+
+    private CompletableFuture<Void> migrate(Tenant tenant, boolean retryFailed) {
+        CompletableFuture<Void> ready = tenant.ready;
+        if (ready != null && !(retryFailed && ready.isCompletedExceptionally())) {
+            return ready;
+        }
+        synchronized (tenant) {
+            if (tenant.ready == null || (retryFailed && tenant.ready.isCompletedExceptionally())) {
+                tenant.ready = CompletableFuture.runAsync(() -> runMigration(tenant), migrationPool);
+            }
+            return tenant.ready;
+        }
+    }
+
+    private void runMigration(Tenant tenant) {
+        long allocatedBefore = allocatedBytes();
+        long start = System.nanoTime();
+        try {
+            MigrateResult result = Flyway.configure()
+                .dataSource(dataSource)
+                .locations(locations)
+                .schemas(tenant.schema)
+                .load()
+                .migrate();
+            tenant.version = result.targetSchemaVersion != null ? result.targetSchemaVersion : result.initialSchemaVersion;
+            tenant.migrationsApplied = result.migrationsExecuted;
+            tenant.error = null;
+        } catch (RuntimeException e) {
+            tenant.error = e.getMessage();
+            log.error("Migrating schema {} of tenant {} failed", tenant.schema, tenant.id, e);
+            throw e;
+        } finally {
+            tenant.migrationMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+            long allocatedAfter = allocatedBytes();
+            tenant.allocatedBytes = allocatedBefore < 0 ? -1 : allocatedAfter - allocatedBefore;
+        }
+    }
+
+    // -1 where the JVM does not track per-thread allocation
+    private static long allocatedBytes() {
+        return ManagementFactory.getThreadMXBean() instanceof ThreadMXBean threads
+            && threads.isThreadAllocatedMemorySupported() && threads.isThreadAllocatedMemoryEnabled()
+            ? threads.getCurrentThreadAllocatedBytes() : -1;
+    }
+}
+
+// Ordered just after Boot's character encoding filter and ahead of admission control
+@Component
+@Order(TenantFilter.ORDER)
+@ConditionalOnProperty(name = "users.tenancy.enabled", havingValue = "true")
+class TenantFilter extends OncePerRequestFilter {
+    static final int ORDER = Ordered.HIGHEST_PRECEDENCE + 10;
+    private static final String API_PATH = "/api/";
+
+    private final TenantRegistry tenantRegistry;
+    private final String header;
+    private final Duration migrationTimeout;
+
+    @Autowired
+    public TenantFilter(TenantRegistry tenantRegistry,
+                        @Value("${users.tenancy.header:X-Tenant-Id}") String header,
+                        @Value("${users.tenancy.migration-timeout:30s}") Duration migrationTimeout) {
+        this.tenantRegistry = tenantRegistry;
+        this.header = header;
+        this.migrationTimeout = migrationTimeout;
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return !request.getRequestURI().substring(request.getContextPath().length()).startsWith(API_PATH);
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        String tenantId = request.getHeader(header);
+        tenantId = tenantId == null ? null : tenantId.trim().toLowerCase(Locale.ROOT);
+        if (!TenantRegistry.isValidId(tenantId)) {
+            response.setStatus(HttpStatus.BAD_REQUEST.value());
+            return;
+        }
+        CompletableFuture<Void> ready = tenantRegistry.ready(tenantId);
+        if (ready == null) {
+            response.setStatus(HttpStatus.NOT_FOUND.value());
+            return;
+        }
+        try {
+            ready.get(migrationTimeout.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            response.setStatus(HttpStatus.SERVICE_UNAVAILABLE.value());
+            return;
+        } catch (ExecutionException | TimeoutException e) {
+            // Still migrating, or the migration failed and waits for POST /admin/tenants/{id}
+            response.setStatus(HttpStatus.SERVICE_UNAVAILABLE.value());
+            response.setHeader("Retry-After", String.valueOf(migrationTimeout.toSeconds() + 1));
+            return;
+        }
+        TenantContext.set(tenantId);
+        try {
+            chain.doFilter(request, response);
+        } finally {
+            TenantContext.clear();
+        }
+    }
+}
+
+@Configuration
+@ConditionalOnProperty(name = "users.tenancy.enabled", havingValue = "true")
+class TenancyConfiguration {
+
+    // Static so the DataSource can be wrapped before regular beans are created. The concrete return
+    // type matters: the container sorts post-processors by the declared bean type, and PriorityOrdered
+    // runs this one before the unordered slow-query wrapper, so routing sits innermost and slow-query
+    // capture (including its EXPLAIN connections) sees routed connections. Every other DataSource,
+    // wrappers included, is routed too, so a different order could never bypass the tenant schema.
+    @Bean
+    public static TenantRoutingPostProcessor tenantRoutingDataSourcePostProcessor() {
+        return new TenantRoutingPostProcessor();
+    }
+
+    static final class TenantRoutingPostProcessor implements BeanPostProcessor, PriorityOrdered {
+
+        @Override
+        public Object postProcessAfterInitialization(Object bean, String beanName) {
+            if (bean instanceof DataSource dataSource && !(bean instanceof TenantRoutingDataSource)) {
+                return new TenantRoutingDataSource(dataSource);
+            }
+            return bean;
+        }
+
+        @Override
+        public int getOrder() {
+            return Ordered.HIGHEST_PRECEDENCE;
+        }
+    }
+}
+
+@RestController
+@RequestMapping("/admin/tenants")
+@ConditionalOnProperty(name = "users.tenancy.enabled", havingValue = "true")
+class TenantController {
+    private final TenantRegistry tenantRegistry;
+    private final boolean registrationEnabled;
+
+    // Creating schemas is off by default; without it the endpoint only retries known tenants
+    @Autowired
+    public TenantController(TenantRegistry tenantRegistry,
+                            @Value("${users.tenancy.registration-enabled:false}") boolean registrationEnabled) {
+        this.tenantRegistry = tenantRegistry;
+        this.registrationEnabled = registrationEnabled;
+    }
+
+    // GET /admin/tenants - Boot time, memory overhead and migration state per tenant
+    @GetMapping
+    public TenantReport getTenants() {
+        return tenantRegistry.report();
+    }
+
+    // POST /admin/tenants/{tenantId} - Register and migrate a tenant, or retry a failed one
+    @PostMapping("/{tenantId}")
+    public ResponseEntity<TenantReport> registerTenant(@PathVariable String tenantId) {
+        String normalized = tenantId.toLowerCase(Locale.ROOT);
+        if (!TenantRegistry.isValidId(normalized)) {
+            return ResponseEntity.badRequest().build();
+        }
+        if (!registrationEnabled && !tenantRegistry.isKnown(normalized)) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+        }
+        tenantRegistry.register(normalized);
+        return ResponseEntity.status(HttpStatus.ACCEPTED).body(tenantRegistry.report());
+    }
+}
+
+// ==================== REACTIVE USER REPOSITORY ====================
+// Non-blocking access to the Flyway-managed users table through R2DBC. The connection
+// factory is deliberately not a bean: Boot's JDBC DataSource auto-configuration backs off
+// when one exists, and JPA and Flyway still need it.
+@Repository
+@ConditionalOnProperty(name = "users.reactive.enabled", havingValue = "true", matchIfMissing = true)
+class ReactiveUserRepository {
+    private static final String SELECT_USERS =
+        "SELECT id, username, email, first_name, last_name, created_at, updated_at FROM users";
+
+    private final ConnectionFactory connectionFactory;
+    private final DatabaseClient databaseClient;
+    private final TransactionalOperator transactionalOperator;
+
+    // Must open the same database as the JDBC DataSource, with its credentials: anything else would
+    // silently serve the reactive API from a separate, empty and unmigrated database
+    @Autowired
+    public ReactiveUserRepository(@Value("${users.reactive.url:r2dbc:pool:h2:mem:///testdb}") String url,
+                                  @Value("${spring.datasource.url}") String jdbcUrl,
+                                  @Value("${spring.datasource.username:sa}") String username,
+                                  @Value("${spring.datasource.password:}") String password) {
+        if (!databaseOf(url).equals(databaseOf(jdbcUrl))) {
+            throw new IllegalStateException("users.reactive.url (" + url + ") must open the same database as " +
+                "spring.datasource.url (" + jdbcUrl + "), or set users.reactive.enabled=false");
+        }
+        this.connectionFactory = ConnectionFactories.get(ConnectionFactoryOptions.parse(url).mutate()
+            .option(ConnectionFactoryOptions.USER, username)
+            .option(ConnectionFactoryOptions.PASSWORD, password)
+            .build());
+        this.databaseClient = DatabaseClient.create(connectionFactory);
+        this.transactionalOperator = TransactionalOperator.create(new R2dbcTransactionManager(connectionFactory));
+    }
+
+    // "mem:testdb" for both jdbc:h2:mem:testdb;DB_CLOSE_DELAY=-1 and r2dbc:pool:h2:mem:///testdb?maxSize=20
+    static String databaseOf(String url) {
+        if (url.startsWith("jdbc:h2:")) {
+            String database = url.substring("jdbc:h2:".length());
+            int options = database.indexOf(';');
+            return options < 0 ? database : database.substring(0, options);
+        }
+        ConnectionFactoryOptions options = ConnectionFactoryOptions.parse(url);
+        String protocol = String.valueOf(options.getValue(ConnectionFactoryOptions.PROTOCOL));
+        return protocol.substring(protocol.lastIndexOf(':') + 1) + ":" + options.getValue(ConnectionFactoryOptions.DATABASE);
+    }
+
+    public <T> Mono<T> inTransaction(Mono<T> work) {
+        return transactionalOperator.transactional(work);
+    }
+
+    @PreDestroy
+    public void close() {
+        if (connectionFactory instanceof Closeable closeable) {
+            Mono.from(closeable.close()).block(Duration.ofSeconds(10));
+        }
+    }
+
+    // Lists hot and archived users, like UserService.getAllUsers
+    public Flux<User> findAll() {
+        return databaseClient.sql(SELECT_USERS + " UNION ALL SELECT id, username, email, first_name, last_name, " +
+                "created_at, updated_at FROM users_archive ORDER BY id")
+            .map(ReactiveUserRepository::toUser)
+            .all();
+    }
+
+    public Mono<User> findById(Long id) {
+        return databaseClient.sql(SELECT_USERS + " WHERE id = :id")
+            .bind("id", id)
+            .map(ReactiveUserRepository::toUser)
+            .one();
+    }
+
+    public Mono<User> findByUsername(String username) {
+        return databaseClient.sql(SELECT_USERS + " WHERE username = :username")
+            .bind("username", username)
+            .map(ReactiveUserRepository::toUser)
+            .one();
+    }
+
+    public Mono<User> findByEmail(String email) {
+        return databaseClient.sql(SELECT_USERS + " WHERE email = :email")
+            .bind("email", email)
+            .map(ReactiveUserRepository::toUser)
+            .one();
+    }
+
+    // Uniqueness spans the hot and archived tiers, as in UserService
+    public Mono<Boolean> existsByUsername(String username) {
+        return databaseClient.sql("SELECT (SELECT COUNT(*) FROM users WHERE username = :username) + " +
+                "(SELECT COUNT(*) FROM users_archive WHERE username = :username)")
+            .bind("username", username)
+            .map(row -> row.get(0, Long.class))
+            .one()
+            .map(count -> count > 0);
+    }
+
+    public Mono<Boolean> existsByEmail(String email) {
+        return databaseClient.sql("SELECT (SELECT COUNT(*) FROM users WHERE email = :email) + " +
+                "(SELECT COUNT(*) FROM users_archive WHERE email = :email)")
+            .bind("email", email)
+            .map(row -> row.get(0, Long.class))
+            .one()
+            .map(count -> count > 0);
+    }
+
+    public Mono<User> insert(User user) {
+        DatabaseClient.GenericExecuteSpec spec = databaseClient.sql(
+                "INSERT INTO users (username, email, first_name, last_name, created_at, updated_at) " +
+                "VALUES (:username, :email, :firstName, :lastName, :createdAt, :updatedAt)")
+            .filter(statement -> statement.returnGeneratedValues("id"));
+        return bindColumns(spec, user)
+            .map(row -> row.get("id", Long.class))
+            .one()
+            .map(id -> {
+                user.setId(id);
+                return user;
+            });
+    }
+
+    public Mono<Long> update(User user) {
+        DatabaseClient.GenericExecuteSpec spec = databaseClient.sql(
+                "UPDATE users SET username = :username, email = :email, first_name = :firstName, " +
+                "last_name = :lastName, created_at = :createdAt, updated_at = :updatedAt WHERE id = :id")
+            .bind("id", user.getId());
+        return bindColumns(spec, user).fetch().rowsUpdated();
+    }
+
+    public Mono<Boolean> promoteById(Long id) {
+        return promote("id", id);
+    }
+
+    public Mono<Boolean> promoteByUsername(String username) {
+        return promote("username", username);
+    }
+
+    public Mono<Boolean> promoteByEmail(String email) {
+        return promote("email", email);
+    }
+
+    // Same promotion as UserArchiveRepository, including the read probe UserService does first so a
+    // miss in both tiers never opens a write transaction; column is always one of the constants above
+    private Mono<Boolean> promote(String column, Object value) {
+        Mono<Boolean> archived = databaseClient.sql("SELECT COUNT(*) FROM users_archive WHERE " + column + " = :value")
+            .bind("value", value)
+            .map(row -> row.get(0, Long.class))
+            .one()
+            .map(count -> count > 0);
+        Mono<Long> copy = databaseClient.sql("INSERT INTO users (id, username, email, first_name, last_name, created_at, updated_at) " +
+                "SELECT id, username, email, first_name, last_name, created_at, CURRENT_TIMESTAMP " +
+                "FROM users_archive WHERE " + column + " = :value")
+            .bind("value", value)
+            .fetch()
+            .rowsUpdated();
+        Mono<Long> remove = databaseClient.sql("DELETE FROM users_archive WHERE " + column + " = :value")
+            .bind("value", value)
+            .fetch()
+            .rowsUpdated();
+        return archived.flatMap(found -> found
+            ? inTransaction(copy.flatMap(promoted -> promoted > 0 ? remove.thenReturn(true) : Mono.just(false)))
+                // A concurrent lookup promoted the same user first
+                .onErrorResume(DuplicateKeyException.class, e -> Mono.just(true))
+            : Mono.just(false));
+    }
+
+    // Same bucket adjustment as UserStatsRepository, for use inside inTransaction
+    public Mono<Void> adjustSignupStats(LocalDateTime createdAt, long delta) {
+        LocalDateTime bucket = createdAt.truncatedTo(ChronoUnit.HOURS);
+        Mono<Long> increment = databaseClient
+            .sql("UPDATE user_signup_stats SET user_count = user_count + :delta WHERE bucket_start = :bucket")
+            .bind("delta", delta)
+            .bind("bucket", bucket)
+            .fetch()
+            .rowsUpdated();
+        return increment
+            .flatMap(updated -> updated > 0 ? Mono.just(updated) : databaseClient
+                .sql("INSERT INTO user_signup_stats (bucket_start, user_count) VALUES (:bucket, :delta)")
+                .bind("bucket", bucket)
+                .bind("delta", delta)
+                .fetch()
+                .rowsUpdated()
+                .onErrorResume(DuplicateKeyException.class, e -> increment))
+            .then();
+    }
+
+    public Mono<Long> deleteById(Long id) {
+        return databaseClient.sql("DELETE FROM users WHERE id = :id")
+            .bind("id", id)
+            .fetch()
+            .rowsUpdated();
+    }
+
+    private static DatabaseClient.GenericExecuteSpec bindColumns(DatabaseClient.GenericExecuteSpec spec, User user) {
+        spec = bindNullable(spec, "username", user.getUsername(), String.class);
+        spec = bindNullable(spec, "email", user.getEmail(), String.class);
+        spec = bindNullable(spec, "firstName", user.getFirstName(), String.class);
+        spec = bindNullable(spec, "lastName", user.getLastName(), String.class);
+        spec = bindNullable(spec, "createdAt", user.getCreatedAt(), LocalDateTime.class);
+        return bindNullable(spec, "updatedAt", user.getUpdatedAt(), LocalDateTime.class);
+    }
+
+    private static DatabaseClient.GenericExecuteSpec bindNullable(DatabaseClient.GenericExecuteSpec spec, String name,
+                                                                  Object value, Class<?> type) {
+        return value != null ? spec.bind(name, value) : spec.bindNull(name, type);
+    }
+
+    private static User toUser(Readable row) {
+        User user = new User(row.get("username", String.class), row.get("email", String.class),
+            row.get("first_name", String.class), row.get("last_name", String.class));
+        user.setId(row.get("id", Long.class));
+        user.setCreatedAt(row.get("created_at", LocalDateTime.class));
+        user.setUpdatedAt(row.get("updated_at", LocalDateTime.class));
+        return user;
+    }
+}
+
+// ==================== REACTIVE USER SERVICE ====================
+@Service
+@ConditionalOnProperty(name = "users.reactive.enabled", havingValue = "true", matchIfMissing = true)
+class ReactiveUserService {
+    private final ReactiveUserRepository reactiveUserRepository;
+    private final UserDirectory userDirectory;
+
+    // Writes are recorded in the user directory, when enabled, once their R2DBC transaction has
+    // committed, so the blocking API's snapshot reads see them just like its own writes
+    @Autowired
+    public ReactiveUserService(ReactiveUserRepository reactiveUserRepository, @Nullable UserDirectory userDirectory) {
+        this.reactiveUserRepository = reactiveUserRepository;
+        this.userDirectory = userDirectory;
+    }
+
+    // Get all users
+    public Flux<User> getAllUsers() {
+        return reactiveUserRepository.findAll();
+    }
+
+    // Get user by ID, promoting it from the archive on a hot miss
+    public Mono<User> getUserById(Long id) {
+        return reactiveUserRepository.findById(id)
+            .switchIfEmpty(Mono.defer(() -> reactiveUserRepository.promoteById(id)
+                .flatMap(promoted -> promoted ? reactiveUserRepository.findById(id) : Mono.<User>empty())));
+    }
+
+    // Get user by username, promoting it from the archive on a hot miss
+    public Mono<User> getUserByUsername(String username) {
+        return reactiveUserRepository.findByUsername(username)
+            .switchIfEmpty(Mono.defer(() -> reactiveUserRepository.promoteByUsername(username)
+                .flatMap(promoted -> promoted ? reactiveUserRepository.findByUsername(username) : Mono.<User>empty())));
+    }
+
+    // Get user by email, promoting it from the archive on a hot miss
+    public Mono<User> getUserByEmail(String email) {
+        return reactiveUserRepository.findByEmail(email)
+            .switchIfEmpty(Mono.defer(() -> reactiveUserRepository.promoteByEmail(email)
+                .flatMap(promoted -> promoted ? reactiveUserRepository.findByEmail(email) : Mono.<User>empty())));
+    }
+
+    // Create new user
+    public Mono<User> createUser(User user) {
+        return reactiveUserRepository.existsByUsername(user.getUsername())
+            .flatMap(usernameTaken -> usernameTaken
+                ? Mono.<Boolean>error(new UserConflictException(UserConflictException.Field.USERNAME, user.getUsername()))
+                : reactiveUserRepository.existsByEmail(user.getEmail()))
+            .flatMap(emailTaken -> emailTaken
+                ? Mono.<User>error(new UserConflictException(UserConflictException.Field.EMAIL, user.getEmail()))
+                : reactiveUserRepository.inTransaction(reactiveUserRepository.insert(user)
+                    .flatMap(saved -> saved.getCreatedAt() == null
+                        ? Mono.just(saved)
+                        : reactiveUserRepository.adjustSignupStats(saved.getCreatedAt(), 1).thenReturn(saved))))
+            .doOnNext(this::recordWrite)
+            // A concurrent insert can still win the race to the unique index
+            .onErrorMap(DataIntegrityViolationException.class, e -> conflictOr(e, user));
+    }
+
+    // Update user
+    public Mono<User> updateUser(Long id, User userDetails) {
+        return getUserById(id)
+            .switchIfEmpty(Mono.error(new UserNotFoundException(id)))
+            .flatMap(user -> checkUnique(user, userDetails).then(Mono.defer(() -> {
+                user.setUsername(userDetails.getUsername());
+                user.setEmail(userDetails.getEmail());
+                user.setFirstName(userDetails.getFirstName());
+                user.setLastName(userDetails.getLastName());
+                user.setUpdatedAt(LocalDateTime.now());
+                return reactiveUserRepository.update(user).thenReturn(user);
+            })))
+            .doOnNext(this::recordWrite)
+            .onErrorMap(DataIntegrityViolationException.class, e -> conflictOr(e, userDetails));
+    }
+
+    private static Throwable conflictOr(DataIntegrityViolationException e, User user) {
+        UserConflictException conflict = UserConflictException.fromUniqueViolation(e, user.getUsername(), user.getEmail());
+        return conflict != null ? conflict : e;
+    }
+
+    // Delete user
+    public Mono<Void> deleteUser(Long id) {
+        return reactiveUserRepository.inTransaction(getUserById(id)
+            .switchIfEmpty(Mono.error(new UserNotFoundException(id)))
+            .flatMap(user -> reactiveUserRepository.deleteById(id)
+                .then(user.getCreatedAt() == null
+                    ? Mono.<Void>empty()
+                    : reactiveUserRepository.adjustSignupStats(user.getCreatedAt(), -1))))
+            .doOnSuccess(done -> {
+                if (userDirectory != null) {
+                    userDirectory.remove(id);
+                }
+            });
+    }
+
+    private void recordWrite(User user) {
+        if (userDirectory != null) {
+            userDirectory.put(user);
+        }
+    }
+
+    private Mono<Void> checkUnique(User user, User userDetails) {
+        Mono<Void> username = user.getUsername().equals(userDetails.getUsername())
+            ? Mono.<Void>empty()
+            : reactiveUserRepository.existsByUsername(userDetails.getUsername())
+                .flatMap(taken -> taken
+                    ? Mono.<Void>error(new UserConflictException(UserConflictException.Field.USERNAME, userDetails.getUsername()))
+                    : Mono.<Void>empty());
+        Mono<Void> email = user.getEmail().equals(userDetails.getEmail())
+            ? Mono.<Void>empty()
+            : reactiveUserRepository.existsByEmail(userDetails.getEmail())
+                .flatMap(taken -> taken
+                    ? Mono.<Void>error(new UserConflictException(UserConflictException.Field.EMAIL, userDetails.getEmail()))
+                    : Mono.<Void>empty());
+        return username.then(email);
+    }
+}
+
+// ==================== REACTIVE USER CONTROLLER ====================
+// Reactive counterpart of UserController. Under the default servlet stack these endpoints run
+// through Spring MVC's reactive return value support; with the reactive profile they are
+// served by WebFlux on Netty. The export endpoint streams NDJSON with backpressure.
+@RestController
+@RequestMapping("/api/reactive/users")
+@ConditionalOnProperty(name = "users.reactive.enabled", havingValue = "true", matchIfMissing = true)
+class ReactiveUserController {
+    private final ReactiveUserService reactiveUserService;
+
+    @Autowired
+    public ReactiveUserController(ReactiveUserService reactiveUserService) {
+        this.reactiveUserService = reactiveUserService;
+    }
+
+    // GET /api/reactive/users - Get all users
+    @GetMapping
+    public Flux<User> getAllUsers() {
+        return reactiveUserService.getAllUsers();
+    }
+
+    // GET /api/reactive/users/export - Stream all users as newline-delimited JSON
+    @GetMapping(value = "/export", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public Flux<User> exportUsers() {
+        return reactiveUserService.getAllUsers();
+    }
+
+    // GET /api/reactive/users/{id} - Get user by ID
+    @GetMapping("/{id}")
+    public Mono<ResponseEntity<User>> getUserById(@PathVariable Long id) {
+        return reactiveUserService.getUserById(id)
+            .map(ResponseEntity::ok)
+            .defaultIfEmpty(ResponseEntity.notFound().build());
+    }
+
+    // POST /api/reactive/users - Create new user
+    @PostMapping
+    public Mono<ResponseEntity<User>> createUser(@RequestBody User user) {
+        return reactiveUserService.createUser(user)
+            .map(createdUser -> ResponseEntity.status(HttpStatus.CREATED).body(createdUser))
+            .onErrorResume(UserConflictException.class,
+                e -> Mono.just(ResponseEntity.status(HttpStatus.CONFLICT).<User>build()))
+            .onErrorResume(DataIntegrityViolationException.class, e -> Mono.just(ResponseEntity.badRequest().<User>build()));
+    }
+
+    // PUT /api/reactive/users/{id} - Update user
+    @PutMapping("/{id}")
+    public Mono<ResponseEntity<User>> updateUser(@PathVariable Long id, @RequestBody User userDetails) {
+        return reactiveUserService.updateUser(id, userDetails)
+            .map(ResponseEntity::ok)
+            .onErrorResume(UserNotFoundException.class, e -> Mono.just(ResponseEntity.notFound().<User>build()))
+            .onErrorResume(UserConflictException.class,
+                e -> Mono.just(ResponseEntity.status(HttpStatus.CONFLICT).<User>build()))
+            .onErrorResume(DataIntegrityViolationException.class, e -> Mono.just(ResponseEntity.badRequest().<User>build()));
+    }
+
+    // DELETE /api/reactive/users/{id} - Delete user
+    @DeleteMapping("/{id}")
+    public Mono<ResponseEntity<Void>> deleteUser(@PathVariable Long id) {
+        return reactiveUserService.deleteUser(id)
+            .then(Mono.just(ResponseEntity.noContent().<Void>build()))
+            .onErrorResume(UserNotFoundException.class, e -> Mono.just(ResponseEntity.notFound().<Void>build()));
+    }
+
+    // GET /api/reactive/users/username/{username} - Get user by username
+    @GetMapping("/username/{username}")
+    public Mono<ResponseEntity<User>> getUserByUsername(@PathVariable String username) {
+        return reactiveUserService.getUserByUsername(username)
+            .map(ResponseEntity::ok)
+            .defaultIfEmpty(ResponseEntity.notFound().build());
+    }
+
+    // GET /api/reactive/users/email/{email} - Get user by email
+    @GetMapping("/email/{email}")
+    public Mono<ResponseEntity<User>> getUserByEmail(@PathVariable String email) {
+        return reactiveUserService.getUserByEmail(email)
+            .map(ResponseEntity::ok)
+            .defaultIfEmpty(ResponseEntity.notFound().build());
+    }
+}
@@ -0,0 +1,17 @@
+-- SQL script to create the hourly signup rollup behind GET /api/users/stats
+-- One row per hour holding the number of current users created in that hour
+
+CREATE TABLE user_signup_stats (
+    bucket_start TIMESTAMP PRIMARY KEY,
+    user_count BIGINT NOT NULL DEFAULT 0
+);
+
+-- Lets the reconciliation job recount one time window at a time
+CREATE INDEX idx_users_created_at ON users (created_at);
+
+-- Backfill from existing users
+INSERT INTO user_signup_stats (bucket_start, user_count)
+SELECT DATE_TRUNC('HOUR', created_at), COUNT(*)
+FROM users
+WHERE created_at IS NOT NULL
+GROUP BY DATE_TRUNC('HOUR', created_at);
@@ -0,0 +1,19 @@
+-- SQL script to create the cold tier for users whose updated_at is older than users.archive.after
+-- Rows keep their id, so an archived user can be promoted back into users unchanged
+
+CREATE TABLE users_archive (
+    id BIGINT PRIMARY KEY,
+    username VARCHAR(255) NOT NULL UNIQUE,
+    email VARCHAR(255) NOT NULL UNIQUE,
+    first_name VARCHAR(255),
+    last_name VARCHAR(255),
+    created_at TIMESTAMP,
+    updated_at TIMESTAMP,
+    archived_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP
+);
+
+-- Lets the stats reconciliation job recount archived users one time window at a time
+CREATE INDEX idx_users_archive_created_at ON users_archive (created_at);
+
+-- Lets the mover find cold rows without scanning the hot table
+CREATE INDEX idx_users_updated_at ON users (updated_at);
@@ -0,0 +1,671 @@
+package com.example.flywaydemo;
+
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.flywaydb.core.Flyway;
+import org.h2.api.Trigger;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Benchmark suite for FlywayDemoApplication
+ * Excluded from the default build; run with: mvn test -Pbenchmark
+ */
+@Tag("benchmark")
+@DisplayName("Flyway Demo Application - Benchmarks")
+class FlywayDemoApplicationBenchmarkTest {
+
+    // Seeds users with a single set-based insert, far faster than saving entities one by one
+    static void seedUsers(JdbcTemplate jdbcTemplate, String prefix, int count) {
+        jdbcTemplate.update("INSERT INTO users (username, email, first_name, last_name) " +
+            "SELECT '" + prefix + "' || X, '" + prefix + "' || X || '@example.com', 'First' || X, 'Last' || X " +
+            "FROM SYSTEM_RANGE(1, " + count + ")");
+    }
+
+    static double percentileMillis(long[] nanos, double percentile) {
+        long[] sorted = nanos.clone();
+        Arrays.sort(sorted);
+        int index = (int) Math.ceil(percentile / 100.0 * sorted.length) - 1;
+        return sorted[Math.max(0, index)] / 1_000_000.0;
+    }
+
+    // Runs the operation from several threads in a closed loop and returns every latency in nanos
+    static long[] runConcurrently(int threads, int requestsPerThread, Callable<?> operation) throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<long[]>> futures = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                futures.add(pool.submit(() -> {
+                    long[] latencies = new long[requestsPerThread];
+                    for (int i = 0; i < requestsPerThread; i++) {
+                        long start = System.nanoTime();
+                        operation.call();
+                        latencies[i] = System.nanoTime() - start;
+                    }
+                    return latencies;
+                }));
+            }
+            long[] all = new long[threads * requestsPerThread];
+            for (int t = 0; t < threads; t++) {
+                System.arraycopy(futures.get(t).get(), 0, all, t * requestsPerThread, requestsPerThread);
+            }
+            return all;
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    static void printLatencySummary(String label, long[] latencies, long elapsedNanos) {
+        System.out.printf("%-28s %,10.0f req/s  p50 %7.2f ms  p99 %7.2f ms  max %7.2f ms%n", label,
+            latencies.length / (elapsedNanos / 1_000_000_000.0), percentileMillis(latencies, 50),
+            percentileMillis(latencies, 99), percentileMillis(latencies, 100));
+    }
+
+    // ==================== RESPONSE ENCODING BENCHMARK ====================
+    @Nested
+    @SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+        properties = "users.admission.enabled=false")
+    @DisplayName("Response Encoding Benchmark")
+    class ResponseEncodingBenchmark {
+
+        // label, Accept, Accept-Encoding
+        private final String[][] variants = {
+            {"json", "application/json", null},
+            {"json+gzip", "application/json", "gzip"},
+            {"cbor", "application/cbor", null},
+            {"cbor+gzip", "application/cbor", "gzip"},
+            {"smile", "application/x-jackson-smile", null},
+            {"smile+gzip", "application/x-jackson-smile", "gzip"}
+        };
+
+        @LocalServerPort
+        private int port;
+
+        @Autowired
+        private JdbcTemplate jdbcTemplate;
+
+        @ParameterizedTest(name = "{0} users")
+        @ValueSource(ints = {1_000, 10_000, 100_000})
+        @DisplayName("Payload size and end-to-end latency of GET /api/users")
+        void listPayloadSizeAndLatency(int userCount) throws Exception {
+            jdbcTemplate.update("DELETE FROM users");
+            seedUsers(jdbcTemplate, "bench", userCount);
+            HttpClient client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_2).build();
+            int iterations = userCount >= 100_000 ? 5 : 20;
+
+            System.out.printf("%n== GET /api/users with %,d users ==%n", userCount);
+            System.out.printf("%-12s %14s %10s %10s %10s%n", "encoding", "bytes", "p50 ms", "max ms", "protocol");
+            try {
+                for (String[] variant : variants) {
+                    HttpRequest.Builder builder = HttpRequest.newBuilder(URI.create("http://localhost:" + port + "/api/users"))
+                        .header("Accept", variant[1]);
+                    if (variant[2] != null) {
+                        builder.header("Accept-Encoding", variant[2]);
+                    }
+                    HttpRequest request = builder.build();
+
+                    // Warm up the serializers and the connection before measuring
+                    for (int i = 0; i < 3; i++) {
+                        client.send(request, HttpResponse.BodyHandlers.ofByteArray());
+                    }
+
+                    long[] latencies = new long[iterations];
+                    HttpResponse<byte[]> response = null;
+                    for (int i = 0; i < iterations; i++) {
+                        long start = System.nanoTime();
+                        response = client.send(request, HttpResponse.BodyHandlers.ofByteArray());
+                        latencies[i] = System.nanoTime() - start;
+                        assertEquals(200, response.statusCode());
+                    }
+                    System.out.printf("%-12s %,14d %10.2f %10.2f %10s%n", variant[0], response.body().length,
+                        percentileMillis(latencies, 50), percentileMillis(latencies, 100), response.version());
+                }
+            } finally {
+                jdbcTemplate.update("DELETE FROM users");
+            }
+        }
+    }
+
+    // ==================== ERROR PATH BENCHMARK ====================
+    @Nested
+    @SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+        properties = "users.admission.enabled=false")
+    @DisplayName("Not Found and Conflict Path Benchmark")
+    class ErrorPathBenchmark {
+
+        private static final int THREADS = 32;
+        private static final int REQUESTS_PER_THREAD = 2_000;
+
+        @LocalServerPort
+        private int port;
+
+        @Autowired
+        private JdbcTemplate jdbcTemplate;
+
+        private final HttpClient client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+
+        private void measure(String label, HttpRequest request, int expectedStatus) throws Exception {
+            runConcurrently(THREADS, 200, () -> client.send(request, HttpResponse.BodyHandlers.discarding()));
+            long start = System.nanoTime();
+            long[] latencies = runConcurrently(THREADS, REQUESTS_PER_THREAD, () -> {
+                int status = client.send(request, HttpResponse.BodyHandlers.discarding()).statusCode();
+                assertEquals(expectedStatus, status);
+                return status;
+            });
+            printLatencySummary(label, latencies, System.nanoTime() - start);
+        }
+
+        @Test
+        @DisplayName("Throughput of 404 and 409 responses under concurrent load")
+        void notFoundAndConflictThroughput() throws Exception {
+            jdbcTemplate.update("DELETE FROM users");
+            seedUsers(jdbcTemplate, "taken", 1);
+            String base = "http://localhost:" + port + "/api/users";
+            String duplicate = "{\"username\":\"taken1\",\"email\":\"taken1@example.com\"}";
+
+            System.out.printf("%n== Error paths, %d threads x %,d requests ==%n", THREADS, REQUESTS_PER_THREAD);
+            try {
+                measure("GET missing id (404)", HttpRequest.newBuilder(URI.create(base + "/987654321")).build(), 404);
+                measure("PUT missing id (404)", HttpRequest.newBuilder(URI.create(base + "/987654321"))
+                    .header("Content-Type", "application/json")
+                    .PUT(HttpRequest.BodyPublishers.ofString(duplicate)).build(), 404);
+                measure("DELETE missing id (404)", HttpRequest.newBuilder(URI.create(base + "/987654321"))
+                    .DELETE().build(), 404);
+                measure("POST duplicate (409)", HttpRequest.newBuilder(URI.create(base))
+                    .header("Content-Type", "application/json")
+                    .POST(HttpRequest.BodyPublishers.ofString(duplicate)).build(), 409);
+            } finally {
+                jdbcTemplate.update("DELETE FROM users");
+            }
+        }
+
+        @Test
+        @DisplayName("Cost of constructing service exceptions")
+        void exceptionConstructionCost() {
+            int iterations = 2_000_000;
+            long sink = 0;
+            for (int round = 0; round < 2; round++) {
+                long start = System.nanoTime();
+                for (int i = 0; i < iterations; i++) {
+                    sink += new RuntimeException("User not found with id: " + i).getStackTrace().length;
+                }
+                long stackful = System.nanoTime() - start;
+
+                start = System.nanoTime();
+                for (int i = 0; i < iterations; i++) {
+                    sink += new UserNotFoundException((long) i).getStackTrace().length;
+                }
+                long stackless = System.nanoTime() - start;
+                System.out.printf("round %d: RuntimeException %6.1f ns/op, UserNotFoundException %6.1f ns/op%n", round,
+                    (double) stackful / iterations, (double) stackless / iterations);
+            }
+            assertTrue(sink > 0);
+        }
+    }
+
+    // ==================== GROUP COMMIT BENCHMARK ====================
+    @Nested
+    @SpringBootTest(properties = "users.admission.enabled=false")
+    @DisplayName("Group Commit Write Benchmark")
+    class GroupCommitBenchmark {
+
+        private static final int THREADS = 64;
+        private static final int CREATES_PER_THREAD = 200;
+
+        @Autowired
+        private UserService userService;
+
+        @Autowired
+        private PlatformTransactionManager transactionManager;
+
+        @Autowired
+        private JdbcTemplate jdbcTemplate;
+
+        @ParameterizedTest(name = "max batch size {0}")
+        @ValueSource(ints = {1, 8, 32, 128})
+        @DisplayName("Create throughput by batch size")
+        void createThroughputByBatchSize(int maxBatchSize) throws Exception {
+            jdbcTemplate.update("DELETE FROM users");
+            UserWriteBatcher batcher = new UserWriteBatcher(userService, transactionManager, 10_000, maxBatchSize,
+                Duration.ofMillis(2), Duration.ofSeconds(5), new SimpleMeterRegistry());
+            batcher.start();
+            AtomicInteger sequence = new AtomicInteger();
+            try {
+                long start = System.nanoTime();
+                long[] latencies = runConcurrently(THREADS, CREATES_PER_THREAD, () -> {
+                    int n = sequence.incrementAndGet();
+                    return batcher.submitCreate(new User("group" + n, "group" + n + "@example.com", "Group", "Commit"))
+                        .get(30, TimeUnit.SECONDS);
+                });
+                printLatencySummary("max batch size " + maxBatchSize, latencies, System.nanoTime() - start);
+                assertEquals(THREADS * CREATES_PER_THREAD, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM users", Integer.class));
+            } finally {
+                batcher.stop();
+                jdbcTemplate.update("DELETE FROM users");
+            }
+        }
+    }
+
+    // ==================== ARCHIVE TIERING BENCHMARK ====================
+    @Nested
+    @SpringBootTest(properties = {"users.admission.enabled=false", "users.archive.batch-size=10000",
+        "users.archive.batch-pause=0ms", "users.archive.max-batches-per-run=1000"})
+    @DisplayName("Archive Tiering Benchmark")
+    class ArchiveTieringBenchmark {
+
+        private static final int HOT_USERS = 1_000;
+
+        @Autowired
+        private UserService userService;
+
+        @Autowired
+        private UserRepository userRepository;
+
+        @Autowired
+        private UserArchiver userArchiver;
+
+        @Autowired
+        private JdbcTemplate jdbcTemplate;
+
+        @ParameterizedTest(name = "{0} total users")
+        @ValueSource(ints = {10_000, 100_000, 500_000})
+        @DisplayName("Hot lookup latency before and after archiving inactive users")
+        void hotLookupLatencyBeforeAndAfterArchiving(int totalUsers) throws Exception {
+            jdbcTemplate.update("DELETE FROM users");
+            jdbcTemplate.update("DELETE FROM users_archive");
+            seedUsers(jdbcTemplate, "cold", totalUsers - HOT_USERS);
+            jdbcTemplate.update("UPDATE users SET updated_at = DATEADD('YEAR', -3, CURRENT_TIMESTAMP)");
+            seedUsers(jdbcTemplate, "hot", HOT_USERS);
+            Callable<Boolean> lookup = () -> {
+                int n = 1 + ThreadLocalRandom.current().nextInt(HOT_USERS);
+                return userService.getUserByUsername("hot" + n).isPresent()
+                    && !userRepository.existsByUsername("new" + n);
+            };
+
+            System.out.printf("%n== Hot lookups with %,d total users ==%n", totalUsers);
+            try {
+                runConcurrently(8, 500, lookup);
+                long start = System.nanoTime();
+                long[] latencies = runConcurrently(8, 5_000, lookup);
+                printLatencySummary("single table", latencies, System.nanoTime() - start);
+
+                long archiveStart = System.nanoTime();
+                int archived = userArchiver.archiveInactiveUsers();
+                System.out.printf("archived %,d users in %,d ms%n", archived,
+                    TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - archiveStart));
+                assertEquals(totalUsers - HOT_USERS, archived);
+
+                runConcurrently(8, 500, lookup);
+                start = System.nanoTime();
+                latencies = runConcurrently(8, 5_000, lookup);
+                printLatencySummary("hot tier only", latencies, System.nanoTime() - start);
+            } finally {
+                jdbcTemplate.update("DELETE FROM users");
+                jdbcTemplate.update("DELETE FROM users_archive");
+            }
+        }
+    }
+
+    // ==================== DIRECTORY SNAPSHOT BENCHMARK ====================
+    @Nested
+    @SpringBootTest(properties = "users.admission.enabled=false")
+    @DisplayName("Directory Snapshot Benchmark")
+    class DirectorySnapshotBenchmark {
+
+        @Autowired
+        private UserRepository userRepository;
+
+        @Autowired
+        private JdbcTemplate jdbcTemplate;
+
+        @ParameterizedTest(name = "{0} users")
+        @ValueSource(ints = {100_000, 1_000_000})
+        @DisplayName("Snapshot write, map and lookup cost against cold database lookups")
+        void snapshotWriteMapAndLookupCost(int userCount) throws Exception {
+            jdbcTemplate.update("DELETE FROM users");
+            seedUsers(jdbcTemplate, "snap", userCount);
+            long minId = jdbcTemplate.queryForObject("SELECT MIN(id) FROM users", Long.class);
+            Path path = Paths.get("target", "benchmark-snapshots", "users-" + userCount + ".snapshot");
+            try {
+                long start = System.nanoTime();
+                try (UserDirectorySnapshot.SnapshotWriter writer = UserDirectorySnapshot.writer(path)) {
+                    jdbcTemplate.query("SELECT id, username, email, first_name, last_name, created_at, updated_at " +
+                        "FROM users ORDER BY id", rs -> {
+                            User user = new User(rs.getString(2), rs.getString(3), rs.getString(4), rs.getString(5));
+                            user.setId(rs.getLong(1));
+                            user.setCreatedAt(rs.getObject(6, LocalDateTime.class));
+                            user.setUpdatedAt(rs.getObject(7, LocalDateTime.class));
+                            try {
+                                writer.add(user);
+                            } catch (IOException e) {
+                                throw new UncheckedIOException(e);
+                            }
+                        });
+                    writer.commit();
+                }
+                long writeNanos = System.nanoTime() - start;
+
+                start = System.nanoTime();
+                UserDirectorySnapshot snapshot = UserDirectorySnapshot.open(path);
+                long mapNanos = System.nanoTime() - start;
+
+                System.out.printf("%n== Directory snapshot with %,d users ==%n", userCount);
+                System.out.printf("file %,d bytes, written in %,d ms, mapped in %.2f ms%n", Files.size(path),
+                    TimeUnit.NANOSECONDS.toMillis(writeNanos), mapNanos / 1_000_000.0);
+
+                // First lookups after boot: the mapped file against JPA with an empty persistence context
+                Callable<Boolean> fromSnapshot = () -> {
+                    int n = 1 + ThreadLocalRandom.current().nextInt(userCount);
+                    return snapshot.findByUsername("snap" + n).isPresent()
+                        && snapshot.findById(minId + n - 1).isPresent();
+                };
+                Callable<Boolean> fromDatabase = () -> {
+                    int n = 1 + ThreadLocalRandom.current().nextInt(userCount);
+                    return userRepository.findByUsername("snap" + n).isPresent()
+                        && userRepository.findById(minId + n - 1).isPresent();
+                };
+                start = System.nanoTime();
+                long[] latencies = runConcurrently(8, 5_000, fromSnapshot);
+                printLatencySummary("mapped snapshot", latencies, System.nanoTime() - start);
+                start = System.nanoTime();
+                latencies = runConcurrently(8, 5_000, fromDatabase);
+                printLatencySummary("database", latencies, System.nanoTime() - start);
+                assertEquals(userCount, snapshot.count());
+            } finally {
+                jdbcTemplate.update("DELETE FROM users");
+                Files.deleteIfExists(path);
+            }
+        }
+    }
+
+    // ==================== LOGGING OVERHEAD BENCHMARK ====================
+    // Same read/write workload against the default settings (show-sql, DEBUG web logging) and the prod profile
+    static void runLoggingWorkload(String label, int port, JdbcTemplate jdbcTemplate) throws Exception {
+        jdbcTemplate.update("DELETE FROM users");
+        seedUsers(jdbcTemplate, "logging", 1_000);
+        long minId = jdbcTemplate.queryForObject("SELECT MIN(id) FROM users", Long.class);
+        HttpClient client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+        String base = "http://localhost:" + port + "/api/users";
+        AtomicInteger sequence = new AtomicInteger();
+        Callable<Integer> operation = () -> {
+            HttpRequest request;
+            if (ThreadLocalRandom.current().nextInt(10) == 0) {
+                int n = sequence.incrementAndGet();
+                request = HttpRequest.newBuilder(URI.create(base))
+                    .header("Content-Type", "application/json")
+                    .POST(HttpRequest.BodyPublishers.ofString(
+                        "{\"username\":\"" + label + n + "\",\"email\":\"" + label + n + "@example.com\"}"))
+                    .build();
+            } else {
+                request = HttpRequest.newBuilder(URI.create(base + "/" + (minId + ThreadLocalRandom.current().nextInt(1_000))))
+                    .build();
+            }
+            return client.send(request, HttpResponse.BodyHandlers.discarding()).statusCode();
+        };
+        try {
+            runConcurrently(16, 200, operation);
+            long start = System.nanoTime();
+            long[] latencies = runConcurrently(16, 2_000, operation);
+            printLatencySummary(label, latencies, System.nanoTime() - start);
+        } finally {
+            jdbcTemplate.update("DELETE FROM users");
+        }
+    }
+
+    @Nested
+    @SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+        properties = "users.admission.enabled=false")
+    @DisplayName("Logging Overhead Benchmark - Default Settings")
+    class DefaultLoggingBenchmark {
+
+        @LocalServerPort
+        private int port;
+
+        @Autowired
+        private JdbcTemplate jdbcTemplate;
+
+        @Test
+        @DisplayName("Throughput with show-sql and DEBUG logging")
+        void defaultLoggingThroughput() throws Exception {
+            runLoggingWorkload("default-logging", port, jdbcTemplate);
+        }
+    }
+
+    @Nested
+    @SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+        properties = "users.admission.enabled=false")
+    @ActiveProfiles("prod")
+    @DisplayName("Logging Overhead Benchmark - Production Profile")
+    class ProductionLoggingBenchmark {
+
+        @LocalServerPort
+        private int port;
+
+        @Autowired
+        private JdbcTemplate jdbcTemplate;
+
+        @Test
+        @DisplayName("Throughput with asynchronous, sampled logging")
+        void productionLoggingThroughput() throws Exception {
+            runLoggingWorkload("prod-logging", port, jdbcTemplate);
+        }
+    }
+
+    // ==================== DURABLE STORAGE BENCHMARK ====================
+    // Compares the default in-memory database with the durable profile's file-backed MVStore, with
+    // every commit written (WRITE_DELAY=0) and group-committed (WRITE_DELAY=500). Each run ends
+    // with a burst of commits followed by SHUTDOWN IMMEDIATELY, which skips the final flush like a
+    // power cut; recovery is the time to reopen and query the file, and lost counts burst commits
+    // missing afterwards. The in-memory database loses everything, so its recovery is a full reload.
+    @Nested
+    @DisplayName("Durable Storage Benchmark")
+    class DurableStorageBenchmark {
+        private static final String FILE_SETTINGS = ";CACHE_SIZE=65536;AUTO_COMPACT_FILL_RATE=90" +
+            ";MAX_COMPACT_TIME=2000;RETENTION_TIME=45000;DB_CLOSE_ON_EXIT=FALSE";
+        private static final int CRASH_BURST = 100;
+
+        @TempDir
+        Path directory;
+
+        private HikariDataSource dataSource(String url) {
+            HikariDataSource dataSource = new HikariDataSource();
+            dataSource.setJdbcUrl(url);
+            dataSource.setUsername("sa");
+            dataSource.setMaximumPoolSize(8);
+            return dataSource;
+        }
+
+        @ParameterizedTest(name = "{0} users")
+        @ValueSource(ints = {10_000, 100_000, 1_000_000})
+        @DisplayName("Read and write throughput and recovery time, in-memory vs file-backed")
+        void throughputAndRecovery(int userCount) throws Exception {
+            String[][] modes = {
+                {"mem", "jdbc:h2:mem:durable-bench;DB_CLOSE_DELAY=-1"},
+                {"file write-delay=0", "jdbc:h2:file:" + directory.resolve("sync-" + userCount) + FILE_SETTINGS +
+                    ";WRITE_DELAY=0"},
+                {"file write-delay=500", "jdbc:h2:file:" + directory.resolve("group-" + userCount) + FILE_SETTINGS +
+                    ";WRITE_DELAY=500"}
+            };
+
+            System.out.printf("%n== Durable storage with %,d users ==%n", userCount);
+            System.out.printf("%-22s %10s %12s %12s %12s %8s%n", "mode", "load ms", "writes/s", "reads/s",
+                "recovery ms", "lost");
+            for (String[] mode : modes) {
+                boolean durable = mode[1].startsWith("jdbc:h2:file:");
+                long loadMillis;
+                double writesPerSecond;
+                double readsPerSecond;
+                try (HikariDataSource dataSource = dataSource(mode[1])) {
+                    long start = System.nanoTime();
+                    Flyway.configure().dataSource(dataSource).locations("classpath:db/migration").load().migrate();
+                    JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+                    seedUsers(jdbcTemplate, "durable", userCount);
+                    loadMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+                    start = System.nanoTime();
+                    long[] writes = runConcurrently(4, 500, () -> jdbcTemplate.update(
+                        "UPDATE users SET updated_at = LOCALTIMESTAMP WHERE id = ?",
+                        ThreadLocalRandom.current().nextInt(1, userCount + 1)));
+                    writesPerSecond = writes.length / ((System.nanoTime() - start) / 1_000_000_000.0);
+
+                    start = System.nanoTime();
+                    long[] reads = runConcurrently(4, 5_000, () -> jdbcTemplate.queryForObject(
+                        "SELECT username FROM users WHERE id = ?", String.class,
+                        ThreadLocalRandom.current().nextInt(1, userCount + 1)));
+                    readsPerSecond = reads.length / ((System.nanoTime() - start) / 1_000_000_000.0);
+
+                    // Everything before the burst is made durable, so only the burst is at risk
+                    jdbcTemplate.execute("CHECKPOINT SYNC");
+                    for (int i = 0; i < CRASH_BURST; i++) {
+                        jdbcTemplate.update("INSERT INTO users (username, email, first_name) VALUES (?, ?, 'crash')",
+                            "crash" + i, "crash" + i + "@example.com");
+                    }
+                    try {
+                        jdbcTemplate.execute("SHUTDOWN IMMEDIATELY");
+                    } catch (DataAccessException e) {
+                        // the session may be closed before the statement returns
+                    }
+                }
+
+                String recovery = String.valueOf(loadMillis);
+                String lost = "all";
+                if (durable) {
+                    long start = System.nanoTime();
+                    try (Connection connection = DriverManager.getConnection(mode[1], "sa", "");
+                         Statement statement = connection.createStatement();
+                         ResultSet rs = statement.executeQuery(
+                             "SELECT COUNT(*), COUNT(CASE WHEN first_name = 'crash' THEN 1 END) FROM users")) {
+                        rs.next();
+                        recovery = String.valueOf(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+                        lost = String.valueOf(CRASH_BURST - rs.getLong(2));
+                        assertEquals(userCount, rs.getLong(1) - rs.getLong(2), "Seeded users lost in " + mode[0]);
+                    }
+                }
+                System.out.printf("%-22s %10d %,12.0f %,12.0f %12s %8s%n", mode[0], loadMillis, writesPerSecond,
+                    readsPerSecond, recovery, lost);
+            }
+        }
+    }
+
+    // ==================== SERVLET VS REACTIVE BENCHMARK ====================
+    // Simulates a slow database: H2 calls this before every SELECT on users
+    public static class SlowSelectTrigger implements Trigger {
+        static volatile long delayMillis;
+
+        @Override
+        public void fire(Connection connection, Object[] oldRow, Object[] newRow) {
+            try {
+                Thread.sleep(delayMillis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    static void runStackComparison(String label, String path, int port, JdbcTemplate jdbcTemplate, long delayMillis)
+            throws Exception {
+        jdbcTemplate.update("DELETE FROM users");
+        seedUsers(jdbcTemplate, "stack", 1_000);
+        long minId = jdbcTemplate.queryForObject("SELECT MIN(id) FROM users", Long.class);
+        SlowSelectTrigger.delayMillis = delayMillis;
+        jdbcTemplate.execute("CREATE TRIGGER IF NOT EXISTS bench_slow_select BEFORE SELECT ON users CALL '" +
+            SlowSelectTrigger.class.getName() + "'");
+        HttpClient client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+        Callable<Integer> lookup = () -> {
+            URI uri = URI.create("http://localhost:" + port + path + "/" + (minId + ThreadLocalRandom.current().nextInt(1_000)));
+            int status = client.send(HttpRequest.newBuilder(uri).build(), HttpResponse.BodyHandlers.discarding()).statusCode();
+            assertEquals(200, status);
+            return status;
+        };
+        try {
+            runConcurrently(64, 20, lookup);
+            long start = System.nanoTime();
+            long[] latencies = runConcurrently(256, 100, lookup);
+            printLatencySummary(label + ", db delay " + delayMillis + "ms", latencies, System.nanoTime() - start);
+        } finally {
+            jdbcTemplate.execute("DROP TRIGGER IF EXISTS bench_slow_select");
+            jdbcTemplate.update("DELETE FROM users");
+        }
+    }
+
+    @Nested
+    @SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+        properties = "users.admission.enabled=false")
+    @DisplayName("Servlet and JPA Stack Benchmark")
+    class ServletStackBenchmark {
+
+        @LocalServerPort
+        private int port;
+
+        @Autowired
+        private JdbcTemplate jdbcTemplate;
+
+        @ParameterizedTest(name = "db delay {0}ms")
+        @ValueSource(longs = {0, 20})
+        @DisplayName("Lookups by id on Tomcat with JPA at 256 concurrent clients")
+        void servletLookups(long delayMillis) throws Exception {
+            runStackComparison("servlet/jpa", "/api/users", port, jdbcTemplate, delayMillis);
+        }
+    }
+
+    @Nested
+    @SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+        properties = "users.admission.enabled=false")
+    @ActiveProfiles("reactive")
+    @DisplayName("WebFlux and R2DBC Stack Benchmark")
+    class ReactiveStackBenchmark {
+
+        @LocalServerPort
+        private int port;
+
+        @Autowired
+        private JdbcTemplate jdbcTemplate;
+
+        @ParameterizedTest(name = "db delay {0}ms")
+        @ValueSource(longs = {0, 20})
+        @DisplayName("Lookups by id on Netty with R2DBC at 256 concurrent clients")
+        void reactiveLookups(long delayMillis) throws Exception {
+            runStackComparison("webflux/r2dbc", "/api/reactive/users", port, jdbcTemplate, delayMillis);
+        }
+    }
+}
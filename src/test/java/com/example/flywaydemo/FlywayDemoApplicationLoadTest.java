@@ -0,0 +1,310 @@
+package com.example.flywaydemo;
+
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Load-testing harness for the users REST API
+ * Starts the application on H2 and replays an open-model request mix against every
+ * UserController endpoint. Arrivals follow a Poisson schedule that does not wait for responses,
+ * and latency is measured from each request's intended start, so a stalled server shows up in
+ * the percentiles instead of silently lowering the offered load (coordinated omission).
+ *
+ * Excluded from the default build; run with: mvn test -Pload-test
+ * Settings are system properties, for example:
+ *   -Dload.rate=500 -Dload.duration=60 -Dload.mix=get=80,create=20 -Dload.label=my-branch
+ * Reports are written to target/load-reports, one file per run plus a summary.csv across runs.
+ */
+@Tag("load")
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+    properties = "users.admission.enabled=false")
+@DisplayName("Flyway Demo Application - Load Test")
+class FlywayDemoApplicationLoadTest {
+
+    private static final String DEFAULT_MIX = "list=2,get=40,username=15,email=15,create=15,update=8,delete=5";
+    private static final Pattern CREATED_ID = Pattern.compile("\"id\":(\\d+)");
+
+    enum Operation { LIST, GET, USERNAME, EMAIL, CREATE, UPDATE, DELETE }
+
+    static final class OperationStats {
+        // Intended start to completion (coordinated-omission corrected)
+        private final ConcurrentHistogram latency = new ConcurrentHistogram(3);
+        // Actual send to completion, for comparison
+        private final ConcurrentHistogram serviceTime = new ConcurrentHistogram(3);
+        private final LongAdder errors = new LongAdder();
+        private final ConcurrentHashMap<Integer, LongAdder> statuses = new ConcurrentHashMap<>();
+    }
+
+    @LocalServerPort
+    private int port;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private final HttpClient client = HttpClient.newBuilder()
+        .version(HttpClient.Version.HTTP_1_1)
+        .connectTimeout(Duration.ofSeconds(5))
+        .build();
+    private final AtomicInteger createSequence = new AtomicInteger();
+    private final ConcurrentLinkedQueue<Long> createdIds = new ConcurrentLinkedQueue<>();
+    private long[] seededIds;
+    private String[] seededUsernames;
+    private Operation[] operations;
+    private int[] cumulativeWeights;
+
+    @Test
+    @DisplayName("Open-model load against the users API")
+    void openModelLoad() throws Exception {
+        double rate = Double.parseDouble(System.getProperty("load.rate", "200"));
+        int durationSeconds = Integer.getInteger("load.duration", 30);
+        int warmupSeconds = Integer.getInteger("load.warmup", 5);
+        int seedUsers = Integer.getInteger("load.seed-users", 1000);
+        String mix = System.getProperty("load.mix", DEFAULT_MIX);
+        double maxErrorRate = Double.parseDouble(System.getProperty("load.max-error-rate", "0.01"));
+        long randomSeed = Long.getLong("load.random-seed", 42L);
+
+        jdbcTemplate.update("DELETE FROM users");
+        FlywayDemoApplicationBenchmarkTest.seedUsers(jdbcTemplate, "load", seedUsers);
+        List<Map<String, Object>> rows = jdbcTemplate.queryForList("SELECT id, username FROM users");
+        seededIds = rows.stream().mapToLong(row -> ((Number) row.get("ID")).longValue()).toArray();
+        seededUsernames = rows.stream().map(row -> (String) row.get("USERNAME")).toArray(String[]::new);
+        parseMix(mix);
+
+        try {
+            runPhase(rate, warmupSeconds, new Random(randomSeed), null);
+            Map<Operation, OperationStats> stats = new EnumMap<>(Operation.class);
+            for (Operation operation : Operation.values()) {
+                stats.put(operation, new OperationStats());
+            }
+            long start = System.nanoTime();
+            runPhase(rate, durationSeconds, new Random(randomSeed + 1), stats);
+            long elapsedNanos = System.nanoTime() - start;
+
+            Path report = writeReport(stats, rate, durationSeconds, seedUsers, mix, elapsedNanos);
+            System.out.println(Files.readString(report));
+
+            long total = stats.values().stream().mapToLong(s -> s.latency.getTotalCount()).sum();
+            long errors = stats.values().stream().mapToLong(s -> s.errors.sum()).sum();
+            assertTrue(total > 0, "No requests were recorded");
+            assertTrue(errors <= total * maxErrorRate,
+                "Error rate " + errors + "/" + total + " exceeds load.max-error-rate=" + maxErrorRate);
+        } finally {
+            jdbcTemplate.update("DELETE FROM users");
+        }
+    }
+
+    private void parseMix(String mix) {
+        Map<Operation, Integer> weights = new EnumMap<>(Operation.class);
+        for (String entry : mix.split(",")) {
+            String[] parts = entry.trim().split("=");
+            weights.put(Operation.valueOf(parts[0].trim().toUpperCase()), Integer.parseInt(parts[1].trim()));
+        }
+        operations = weights.keySet().toArray(new Operation[0]);
+        cumulativeWeights = new int[operations.length];
+        int sum = 0;
+        for (int i = 0; i < operations.length; i++) {
+            sum += weights.get(operations[i]);
+            cumulativeWeights[i] = sum;
+        }
+        assertTrue(sum > 0, "load.mix must have a positive total weight");
+    }
+
+    private Operation pick(Random random) {
+        int ticket = random.nextInt(cumulativeWeights[cumulativeWeights.length - 1]);
+        for (int i = 0; i < cumulativeWeights.length; i++) {
+            if (ticket < cumulativeWeights[i]) {
+                return operations[i];
+            }
+        }
+        return operations[operations.length - 1];
+    }
+
+    // Dispatches on schedule regardless of outstanding responses; every request gets its own virtual thread
+    private void runPhase(double rate, int seconds, Random random, Map<Operation, OperationStats> stats) {
+        double meanIntervalNanos = TimeUnit.SECONDS.toNanos(1) / rate;
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            long start = System.nanoTime();
+            long end = start + TimeUnit.SECONDS.toNanos(seconds);
+            long intended = start;
+            while (intended < end) {
+                long wait = intended - System.nanoTime();
+                if (wait > 0) {
+                    LockSupport.parkNanos(wait);
+                }
+                Operation operation = pick(random);
+                long intendedStart = intended;
+                executor.submit(() -> execute(operation, intendedStart, stats == null ? null : stats.get(operation)));
+                intended += (long) (-Math.log(1 - random.nextDouble()) * meanIntervalNanos);
+            }
+        }
+    }
+
+    private void execute(Operation operation, long intendedStartNanos, OperationStats stats) {
+        long sent = System.nanoTime();
+        int status;
+        try {
+            HttpResponse<String> response = client.send(requestFor(operation), HttpResponse.BodyHandlers.ofString());
+            status = response.statusCode();
+            if (operation == Operation.CREATE && status == 201) {
+                Matcher matcher = CREATED_ID.matcher(response.body());
+                if (matcher.find()) {
+                    createdIds.add(Long.parseLong(matcher.group(1)));
+                }
+            }
+        } catch (Exception e) {
+            status = -1;
+        }
+        long done = System.nanoTime();
+        if (stats == null) {
+            return;
+        }
+        stats.latency.recordValue(TimeUnit.NANOSECONDS.toMicros(done - intendedStartNanos));
+        stats.serviceTime.recordValue(TimeUnit.NANOSECONDS.toMicros(done - sent));
+        stats.statuses.computeIfAbsent(status, key -> new LongAdder()).increment();
+        if (status < 0 || status >= 500) {
+            stats.errors.increment();
+        }
+    }
+
+    private HttpRequest requestFor(Operation operation) {
+        String base = "http://localhost:" + port + "/api/users";
+        int index = ThreadLocalRandom.current().nextInt(seededIds.length);
+        String username = seededUsernames[index];
+        switch (operation) {
+            case LIST:
+                return HttpRequest.newBuilder(URI.create(base)).build();
+            case GET:
+                return HttpRequest.newBuilder(URI.create(base + "/" + seededIds[index])).build();
+            case USERNAME:
+                return HttpRequest.newBuilder(URI.create(base + "/username/" + username)).build();
+            case EMAIL:
+                return HttpRequest.newBuilder(URI.create(base + "/email/" + username + "@example.com")).build();
+            case CREATE:
+                String created = "loadc" + createSequence.incrementAndGet();
+                return HttpRequest.newBuilder(URI.create(base))
+                    .header("Content-Type", "application/json")
+                    .POST(HttpRequest.BodyPublishers.ofString(userJson(created, "Created")))
+                    .build();
+            case UPDATE:
+                return HttpRequest.newBuilder(URI.create(base + "/" + seededIds[index]))
+                    .header("Content-Type", "application/json")
+                    .PUT(HttpRequest.BodyPublishers.ofString(userJson(username, "Updated")))
+                    .build();
+            case DELETE:
+                // Only users created during the run are deleted; with none left this is a 404 probe
+                Long id = createdIds.poll();
+                return HttpRequest.newBuilder(URI.create(base + "/" + (id != null ? id : 0))).DELETE().build();
+            default:
+                throw new IllegalArgumentException("Unknown operation: " + operation);
+        }
+    }
+
+    private static String userJson(String username, String firstName) {
+        return "{\"username\":\"" + username + "\",\"email\":\"" + username + "@example.com\"," +
+            "\"firstName\":\"" + firstName + "\",\"lastName\":\"Load\"}";
+    }
+
+    private Path writeReport(Map<Operation, OperationStats> stats, double rate, int durationSeconds, int seedUsers,
+                             String mix, long elapsedNanos) throws IOException {
+        Path directory = Path.of(System.getProperty("load.report-dir", "target/load-reports"));
+        Files.createDirectories(directory);
+        String label = System.getProperty("load.label", gitRevision());
+        String timestamp = DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss").format(LocalDateTime.now());
+        Path report = directory.resolve(label + "-" + timestamp + ".txt");
+        Path summary = directory.resolve("summary.csv");
+        boolean newSummary = Files.notExists(summary);
+        double elapsedSeconds = elapsedNanos / 1_000_000_000.0;
+
+        try (PrintStream out = new PrintStream(Files.newOutputStream(report), false, StandardCharsets.UTF_8);
+             PrintStream csv = new PrintStream(Files.newOutputStream(summary, StandardOpenOption.CREATE,
+                 StandardOpenOption.APPEND), false, StandardCharsets.UTF_8)) {
+            if (newSummary) {
+                csv.println("timestamp,label,rate,duration_s,seed_users,operation,count,errors,throughput_rps," +
+                    "p50_ms,p90_ms,p99_ms,p999_ms,max_ms");
+            }
+            out.printf("label=%s timestamp=%s%n", label, timestamp);
+            out.printf("rate=%.1f/s duration=%ds seed-users=%d mix=%s%n", rate, durationSeconds, seedUsers, mix);
+            out.println("Latency is measured from intended start (coordinated-omission corrected); ms");
+            out.printf("%n%-9s %8s %6s %9s %9s %9s %9s %9s %9s %12s %s%n", "operation", "count", "errors", "rps",
+                "p50", "p90", "p99", "p99.9", "max", "svc p99", "statuses");
+            for (Map.Entry<Operation, OperationStats> entry : stats.entrySet()) {
+                Histogram latency = entry.getValue().latency;
+                if (latency.getTotalCount() == 0) {
+                    continue;
+                }
+                long errors = entry.getValue().errors.sum();
+                double throughput = latency.getTotalCount() / elapsedSeconds;
+                out.printf("%-9s %8d %6d %9.1f %9.2f %9.2f %9.2f %9.2f %9.2f %12.2f %s%n", entry.getKey(),
+                    latency.getTotalCount(), errors, throughput, millis(latency, 50), millis(latency, 90),
+                    millis(latency, 99), millis(latency, 99.9), latency.getMaxValue() / 1000.0,
+                    millis(entry.getValue().serviceTime, 99), entry.getValue().statuses);
+                csv.printf("%s,%s,%.1f,%d,%d,%s,%d,%d,%.1f,%.3f,%.3f,%.3f,%.3f,%.3f%n", timestamp, label, rate,
+                    durationSeconds, seedUsers, entry.getKey(), latency.getTotalCount(), errors, throughput,
+                    millis(latency, 50), millis(latency, 90), millis(latency, 99), millis(latency, 99.9),
+                    latency.getMaxValue() / 1000.0);
+            }
+            for (Map.Entry<Operation, OperationStats> entry : stats.entrySet()) {
+                if (entry.getValue().latency.getTotalCount() > 0) {
+                    out.printf("%n== %s latency distribution (ms) ==%n", entry.getKey());
+                    entry.getValue().latency.outputPercentileDistribution(out, 1000.0);
+                }
+            }
+        }
+        return report;
+    }
+
+    private static double millis(Histogram histogram, double percentile) {
+        return histogram.getValueAtPercentile(percentile) / 1000.0;
+    }
+
+    private static String gitRevision() {
+        try {
+            Process git = new ProcessBuilder("git", "rev-parse", "--short", "HEAD").redirectErrorStream(true).start();
+            String revision = new String(git.getInputStream().readAllBytes(), StandardCharsets.UTF_8).trim();
+            return git.waitFor() == 0 && !revision.isEmpty() ? revision : "unknown";
+        } catch (IOException e) {
+            return "unknown";
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return "unknown";
+        }
+    }
+}
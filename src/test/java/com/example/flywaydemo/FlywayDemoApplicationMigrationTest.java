@@ -0,0 +1,326 @@
+package com.example.flywaydemo;
+
+import org.flywaydb.core.Flyway;
+import org.flywaydb.core.api.MigrationInfo;
+import org.flywaydb.core.api.MigrationVersion;
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Migration performance harness for db/migration
+ * Migrates a scratch H2 database up to a baseline version, bulk-loads synthetic users, then applies
+ * every pending migration one version at a time. For each migration it reports wall time, how long
+ * concurrent reads and writes on users stalled, the table locks observed in
+ * INFORMATION_SCHEMA.LOCKS and per-table row-count changes, and fails when one exceeds its budget.
+ *
+ * Excluded from the default build; run with: mvn test -Pmigration-test
+ * Settings are system properties, for example:
+ *   -Dmigration.seed-users=10000000 -Dmigration.budget=30s -Dmigration.budget.3=5s
+ * Ten million in-memory users need several GB of heap; -Dmigration.url=jdbc:h2:file:./target/migration-perf
+ * keeps them on disk instead. Reports are written to target/migration-reports, one file per run
+ * plus a summary.csv across runs.
+ */
+@Tag("migration")
+@DisplayName("Flyway Demo Application - Migration Performance")
+class FlywayDemoApplicationMigrationTest {
+
+    private static final Pattern DURATION = Pattern.compile("(\\d+)(ms|s|m)");
+    private static final int SEED_CHUNK = 500_000;
+
+    record MigrationResult(String version, String description, long millis, Duration budget, long readStallMillis,
+                           long writeStallMillis, Map<String, Long> lockMillis, Map<String, Long> rowsBefore,
+                           Map<String, Long> rowsAfter) {
+
+        boolean overBudget() {
+            return millis > budget.toMillis();
+        }
+    }
+
+    // Samples INFORMATION_SCHEMA.LOCKS and times single-row reads and writes on users from their own
+    // sessions while a migration runs; the longest probe is how long production traffic would stall
+    static final class LockProbe implements AutoCloseable {
+        private final JdbcDataSource dataSource;
+        private final long intervalMillis;
+        private final long maxUserId;
+        private final Map<String, LongAdder> lockSamples = new ConcurrentHashMap<>();
+        private final AtomicLong maxReadNanos = new AtomicLong();
+        private final AtomicLong maxWriteNanos = new AtomicLong();
+        private final List<Thread> threads = new ArrayList<>();
+        private volatile boolean running = true;
+
+        LockProbe(JdbcDataSource dataSource, long intervalMillis, long maxUserId) {
+            this.dataSource = dataSource;
+            this.intervalMillis = intervalMillis;
+            this.maxUserId = maxUserId;
+            threads.add(Thread.ofPlatform().daemon().name("migration-locks").start(this::sampleLocks));
+            threads.add(Thread.ofPlatform().daemon().name("migration-read-probe").start(() ->
+                probe("SELECT username FROM users WHERE id = ?", maxReadNanos)));
+            threads.add(Thread.ofPlatform().daemon().name("migration-write-probe").start(() ->
+                probe("UPDATE users SET updated_at = updated_at WHERE id = ?", maxWriteNanos)));
+        }
+
+        private void sampleLocks() {
+            try (Connection connection = dataSource.getConnection();
+                 PreparedStatement statement = connection.prepareStatement(
+                     "SELECT TABLE_NAME, LOCK_TYPE FROM INFORMATION_SCHEMA.LOCKS")) {
+                while (running) {
+                    try (ResultSet rs = statement.executeQuery()) {
+                        while (rs.next()) {
+                            lockSamples.computeIfAbsent(rs.getString(1) + ":" + rs.getString(2), key -> new LongAdder())
+                                .increment();
+                        }
+                    }
+                    Thread.sleep(intervalMillis);
+                }
+            } catch (SQLException e) {
+                System.out.println("Lock sampling unavailable: " + e.getMessage());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        private void probe(String sql, AtomicLong maxNanos) {
+            try (Connection connection = dataSource.getConnection()) {
+                try (Statement statement = connection.createStatement()) {
+                    // Wait out any lock the migration holds instead of failing the probe
+                    statement.execute("SET LOCK_TIMEOUT 3600000");
+                }
+                try (PreparedStatement statement = connection.prepareStatement(sql)) {
+                    while (running) {
+                        statement.setLong(1, 1 + ThreadLocalRandom.current().nextLong(Math.max(1, maxUserId)));
+                        long start = System.nanoTime();
+                        statement.execute();
+                        maxNanos.accumulateAndGet(System.nanoTime() - start, Math::max);
+                        Thread.sleep(intervalMillis);
+                    }
+                }
+            } catch (SQLException e) {
+                // users may be renamed or dropped by the migration under test
+                System.out.println("Probe stopped: " + e.getMessage());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        // Approximate time each table:lock-type pair was held, in sampling intervals
+        Map<String, Long> lockMillis() {
+            Map<String, Long> millis = new TreeMap<>();
+            lockSamples.forEach((lock, samples) -> millis.put(lock, samples.sum() * intervalMillis));
+            return millis;
+        }
+
+        @Override
+        public void close() throws InterruptedException {
+            running = false;
+            for (Thread thread : threads) {
+                thread.join(TimeUnit.SECONDS.toMillis(30));
+            }
+        }
+    }
+
+    @Test
+    @DisplayName("Apply pending migrations against a large seeded dataset")
+    void applyPendingMigrationsAgainstLargeDataset() throws Exception {
+        String url = System.getProperty("migration.url", "jdbc:h2:mem:migration-perf;DB_CLOSE_DELAY=-1");
+        int seedUsers = Integer.getInteger("migration.seed-users", 1_000_000);
+        String baseline = System.getProperty("migration.baseline", "1");
+        Duration defaultBudget = parseDuration(System.getProperty("migration.budget", "60s"));
+        long probeInterval = Long.getLong("migration.probe-interval-ms", 20L);
+
+        JdbcDataSource dataSource = new JdbcDataSource();
+        dataSource.setURL(url);
+        dataSource.setUser("sa");
+        try {
+            flyway(dataSource, baseline).migrate();
+            long seedMillis = seed(dataSource, seedUsers);
+            System.out.printf("Seeded %,d users in %,d ms (%,.0f rows/s)%n", seedUsers, seedMillis,
+                seedUsers / Math.max(0.001, seedMillis / 1000.0));
+
+            MigrationInfo[] pending = flyway(dataSource, MigrationVersion.LATEST.getVersion()).info().pending();
+            assertTrue(pending.length > 0, "No migrations pending after baseline " + baseline);
+            List<MigrationResult> results = new ArrayList<>();
+            for (MigrationInfo migration : pending) {
+                if (migration.getVersion() == null) {
+                    continue;
+                }
+                String version = migration.getVersion().getVersion();
+                Duration budget = parseDuration(System.getProperty("migration.budget." + version,
+                    defaultBudget.toMillis() + "ms"));
+                Map<String, Long> rowsBefore = rowCounts(dataSource);
+                long elapsed;
+                LockProbe probe = new LockProbe(dataSource, probeInterval, seedUsers);
+                try {
+                    long start = System.nanoTime();
+                    flyway(dataSource, version).migrate();
+                    elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+                } finally {
+                    probe.close();
+                }
+                results.add(new MigrationResult(version, migration.getDescription(), elapsed, budget,
+                    TimeUnit.NANOSECONDS.toMillis(probe.maxReadNanos.get()),
+                    TimeUnit.NANOSECONDS.toMillis(probe.maxWriteNanos.get()), probe.lockMillis(), rowsBefore,
+                    rowCounts(dataSource)));
+            }
+
+            Path report = writeReport(results, seedUsers, baseline, seedMillis);
+            System.out.println(Files.readString(report));
+
+            List<String> overBudget = results.stream()
+                .filter(MigrationResult::overBudget)
+                .map(result -> "V" + result.version() + " took " + result.millis() + " ms (budget " +
+                    result.budget().toMillis() + " ms)")
+                .toList();
+            assertTrue(overBudget.isEmpty(), "Migrations over budget: " + overBudget);
+        } finally {
+            try (Connection connection = dataSource.getConnection(); Statement statement = connection.createStatement()) {
+                statement.execute("DROP ALL OBJECTS");
+            }
+        }
+    }
+
+    private static Flyway flyway(JdbcDataSource dataSource, String target) {
+        return Flyway.configure()
+            .dataSource(dataSource)
+            .locations("classpath:db/migration")
+            .target(target)
+            .load();
+    }
+
+    // Set-based inserts in chunks keep each transaction's undo log bounded; timestamps are spread
+    // over five years so date-based backfills and indexes see realistic distributions
+    private static long seed(JdbcDataSource dataSource, int count) throws SQLException {
+        long start = System.nanoTime();
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement statement = connection.prepareStatement(
+                 "INSERT INTO users (username, email, first_name, last_name, created_at, updated_at) " +
+                 "SELECT 'mig' || X, 'mig' || X || '@example.com', 'First' || MOD(X, 1000), 'Last' || MOD(X, 997), " +
+                 "DATEADD('SECOND', -MOD(X * 7919, 157680000), LOCALTIMESTAMP), " +
+                 "DATEADD('SECOND', -MOD(X * 104729, 157680000), LOCALTIMESTAMP) " +
+                 "FROM SYSTEM_RANGE(?, ?)")) {
+            for (long from = 1; from <= count; from += SEED_CHUNK) {
+                statement.setLong(1, from);
+                statement.setLong(2, Math.min(count, from + SEED_CHUNK - 1));
+                statement.executeUpdate();
+            }
+        }
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+    }
+
+    private static Map<String, Long> rowCounts(JdbcDataSource dataSource) throws SQLException {
+        Map<String, Long> counts = new TreeMap<>();
+        try (Connection connection = dataSource.getConnection(); Statement statement = connection.createStatement()) {
+            List<String> tables = new ArrayList<>();
+            try (ResultSet rs = statement.executeQuery("SELECT TABLE_NAME FROM INFORMATION_SCHEMA.TABLES " +
+                    "WHERE TABLE_SCHEMA = 'PUBLIC' AND TABLE_TYPE = 'BASE TABLE'")) {
+                while (rs.next()) {
+                    tables.add(rs.getString(1));
+                }
+            }
+            for (String table : tables) {
+                try (ResultSet rs = statement.executeQuery("SELECT COUNT(*) FROM \"" + table + "\"")) {
+                    rs.next();
+                    counts.put(table, rs.getLong(1));
+                }
+            }
+        }
+        return counts;
+    }
+
+    private static Map<String, String> rowChanges(MigrationResult result) {
+        Map<String, String> changes = new LinkedHashMap<>();
+        result.rowsAfter().forEach((table, after) -> {
+            Long before = result.rowsBefore().get(table);
+            if (before == null) {
+                changes.put(table, "new " + after);
+            } else if (!before.equals(after)) {
+                changes.put(table, String.format("%+d", after - before));
+            }
+        });
+        result.rowsBefore().keySet().stream()
+            .filter(table -> !result.rowsAfter().containsKey(table))
+            .forEach(table -> changes.put(table, "dropped"));
+        return changes;
+    }
+
+    private static Path writeReport(List<MigrationResult> results, int seedUsers, String baseline, long seedMillis)
+            throws IOException {
+        Path directory = Path.of(System.getProperty("migration.report-dir", "target/migration-reports"));
+        Files.createDirectories(directory);
+        String label = System.getProperty("migration.label", "run");
+        String timestamp = DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss").format(LocalDateTime.now());
+        Path report = directory.resolve(label + "-" + timestamp + ".txt");
+        Path summary = directory.resolve("summary.csv");
+        boolean newSummary = Files.notExists(summary);
+
+        try (PrintStream out = new PrintStream(Files.newOutputStream(report), false, StandardCharsets.UTF_8);
+             PrintStream csv = new PrintStream(Files.newOutputStream(summary, StandardOpenOption.CREATE,
+                 StandardOpenOption.APPEND), false, StandardCharsets.UTF_8)) {
+            if (newSummary) {
+                csv.println("timestamp,label,seed_users,version,description,millis,budget_ms,read_stall_ms," +
+                    "write_stall_ms,status");
+            }
+            out.printf("label=%s timestamp=%s%n", label, timestamp);
+            out.printf("seed-users=%d baseline=V%s seeded in %d ms%n", seedUsers, baseline, seedMillis);
+            out.println("Stalls are the longest single-row read/write on users from another session; ms");
+            out.printf("%n%-8s %-32s %10s %10s %10s %10s %-6s%n", "version", "description", "millis", "budget",
+                "read stall", "wr stall", "status");
+            for (MigrationResult result : results) {
+                String status = result.overBudget() ? "OVER" : "ok";
+                out.printf("V%-7s %-32s %10d %10d %10d %10d %-6s%n", result.version(), result.description(),
+                    result.millis(), result.budget().toMillis(), result.readStallMillis(), result.writeStallMillis(),
+                    status);
+                out.printf("         locks held (table:type ~ms) %s%n", result.lockMillis());
+                out.printf("         row changes %s%n", rowChanges(result));
+                csv.printf("%s,%s,%d,%s,\"%s\",%d,%d,%d,%d,%s%n", timestamp, label, seedUsers, result.version(),
+                    result.description(), result.millis(), result.budget().toMillis(), result.readStallMillis(),
+                    result.writeStallMillis(), status);
+            }
+        }
+        return report;
+    }
+
+    // Accepts 500ms, 30s, 5m or ISO-8601 (PT30S)
+    static Duration parseDuration(String value) {
+        Matcher matcher = DURATION.matcher(value.trim());
+        if (!matcher.matches()) {
+            return Duration.parse(value.trim());
+        }
+        long amount = Long.parseLong(matcher.group(1));
+        return switch (matcher.group(2)) {
+            case "ms" -> Duration.ofMillis(amount);
+            case "s" -> Duration.ofSeconds(amount);
+            default -> Duration.ofMinutes(amount);
+        };
+    }
+}
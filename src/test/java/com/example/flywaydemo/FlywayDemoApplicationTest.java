@@ -1,23 +1,90 @@
 package com.example.flywaydemo;
 
+import ch.qos.logback.classic.AsyncAppender;
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.LoggerContext;
+import ch.qos.logback.classic.joran.JoranConfigurator;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.classic.spi.LoggingEvent;
+import ch.qos.logback.core.ConsoleAppender;
+import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.servlet.FilterChain;
+import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Nested;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.beans.BeanUtils;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.boot.logging.LoggingInitializationContext;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.OrderUtils;
+import org.springframework.core.env.ConfigurableEnvironment;
+import org.springframework.core.env.Environment;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.HttpStatusCode;
 import org.springframework.http.MediaType;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.server.MockServerWebExchange;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.reactive.server.WebTestClient;
 import org.springframework.test.web.servlet.MockMvc;
 import org.springframework.test.web.servlet.setup.MockMvcBuilders;
-
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.util.ClassUtils;
+import org.springframework.web.server.WebFilterChain;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.lang.reflect.Constructor;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.time.Duration;
 import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPInputStream;
+import javax.sql.DataSource;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
@@ -169,6 +236,15 @@ class FlywayDemoApplicationTest {
         @Mock
         private UserRepository userRepository;
 
+        @Mock
+        private UserStatsRepository userStatsRepository;
+
+        @Mock
+        private UserArchiveRepository userArchiveRepository;
+
+        @Mock
+        private UserDirectory userDirectory;
+
         @InjectMocks
         private UserService userService;
 
@@ -231,6 +307,84 @@ class FlywayDemoApplicationTest {
             verify(userRepository).findById(999L);
         }
 
+        @Test
+        @DisplayName("Should promote archived user when lookup misses hot table")
+        void shouldPromoteArchivedUserWhenLookupMissesHotTable() {
+            // Given
+            when(userRepository.findById(1L)).thenReturn(Optional.empty(), Optional.of(testUser));
+            when(userArchiveRepository.existsById(1L)).thenReturn(true);
+            when(userArchiveRepository.promoteById(1L)).thenReturn(true);
+
+            // When
+            Optional<User> result = userService.getUserById(1L);
+
+            // Then
+            assertTrue(result.isPresent());
+            assertEquals(testUser, result.get());
+            verify(userArchiveRepository).promoteById(1L);
+            verify(userRepository, times(2)).findById(1L);
+        }
+
+        @Test
+        @DisplayName("Should not attempt promotion when user is in neither tier")
+        void shouldNotAttemptPromotionWhenUserIsInNeitherTier() {
+            // Given
+            when(userRepository.findByEmail("nobody@example.com")).thenReturn(Optional.empty());
+            when(userArchiveRepository.existsByEmail("nobody@example.com")).thenReturn(false);
+
+            // When
+            Optional<User> result = userService.getUserByEmail("nobody@example.com");
+
+            // Then
+            assertFalse(result.isPresent());
+            verify(userArchiveRepository, never()).promoteByEmail(anyString());
+        }
+
+        @Test
+        @DisplayName("Should serve lookup from user directory without querying database")
+        void shouldServeLookupFromUserDirectoryWithoutQueryingDatabase() {
+            // Given
+            when(userDirectory.findByUsername("testuser")).thenReturn(Optional.of(testUser));
+
+            // When
+            Optional<User> result = userService.getUserByUsername("testuser");
+
+            // Then
+            assertEquals(Optional.of(testUser), result);
+            verifyNoInteractions(userRepository, userArchiveRepository);
+        }
+
+        @Test
+        @DisplayName("Should record writes in user directory")
+        void shouldRecordWritesInUserDirectory() {
+            // Given
+            User newUser = new User("newuser", "new@example.com", "New", "User");
+            when(userRepository.save(newUser)).thenReturn(newUser);
+            when(userRepository.findById(1L)).thenReturn(Optional.of(testUser));
+
+            // When
+            userService.createUser(newUser);
+            userService.deleteUser(1L);
+
+            // Then
+            verify(userDirectory).put(newUser);
+            verify(userDirectory).remove(1L);
+            verify(userDirectory, never()).findById(anyLong());
+        }
+
+        @Test
+        @DisplayName("Should not touch archive when user is hot")
+        void shouldNotTouchArchiveWhenUserIsHot() {
+            // Given
+            when(userRepository.findByEmail("test@example.com")).thenReturn(Optional.of(testUser));
+
+            // When
+            userService.getUserByEmail("test@example.com");
+
+            // Then
+            verifyNoInteractions(userArchiveRepository);
+        }
+
         @Test
         @DisplayName("Should get user by username")
         void shouldGetUserByUsername() {
@@ -289,9 +443,10 @@ class FlywayDemoApplicationTest {
             when(userRepository.existsByUsername("testuser")).thenReturn(true);
 
             // When & Then
-            RuntimeException exception = assertThrows(RuntimeException.class, 
+            UserConflictException exception = assertThrows(UserConflictException.class, 
                 () -> userService.createUser(newUser));
             
+            assertEquals(UserConflictException.Field.USERNAME, exception.getField());
             assertEquals("Username already exists: testuser", exception.getMessage());
             verify(userRepository).existsByUsername("testuser");
             verify(userRepository, never()).save(any(User.class));
@@ -306,9 +461,10 @@ class FlywayDemoApplicationTest {
             when(userRepository.existsByEmail("test@example.com")).thenReturn(true);
 
             // When & Then
-            RuntimeException exception = assertThrows(RuntimeException.class, 
+            UserConflictException exception = assertThrows(UserConflictException.class, 
                 () -> userService.createUser(newUser));
             
+            assertEquals(UserConflictException.Field.EMAIL, exception.getField());
             assertEquals("Email already exists: test@example.com", exception.getMessage());
             verify(userRepository).existsByEmail("test@example.com");
             verify(userRepository, never()).save(any(User.class));
@@ -341,7 +497,7 @@ class FlywayDemoApplicationTest {
             when(userRepository.findById(999L)).thenReturn(Optional.empty());
 
             // When & Then
-            RuntimeException exception = assertThrows(RuntimeException.class, 
+            UserNotFoundException exception = assertThrows(UserNotFoundException.class, 
                 () -> userService.updateUser(999L, updatedDetails));
             
             assertTrue(exception.getMessage().contains("User not found with id: 999"));
@@ -370,12 +526,85 @@ class FlywayDemoApplicationTest {
             when(userRepository.findById(999L)).thenReturn(Optional.empty());
 
             // When & Then
-            RuntimeException exception = assertThrows(RuntimeException.class, 
+            UserNotFoundException exception = assertThrows(UserNotFoundException.class, 
                 () -> userService.deleteUser(999L));
             
             assertTrue(exception.getMessage().contains("User not found with id: 999"));
             verify(userRepository).findById(999L);
             verify(userRepository, never()).delete(any(User.class));
+            verify(userStatsRepository, never()).adjust(any(LocalDateTime.class), anyLong());
+        }
+
+        @Test
+        @DisplayName("Should reject username held by an archived user")
+        void shouldRejectUsernameHeldByArchivedUser() {
+            // Given
+            User newUser = new User("archived", "new@example.com", "New", "User");
+            when(userRepository.existsByUsername("archived")).thenReturn(false);
+            when(userArchiveRepository.existsByUsername("archived")).thenReturn(true);
+
+            // When & Then
+            UserConflictException exception = assertThrows(UserConflictException.class,
+                () -> userService.createUser(newUser));
+
+            assertEquals(UserConflictException.Field.USERNAME, exception.getField());
+            verify(userRepository, never()).save(any(User.class));
+        }
+
+        @Test
+        @DisplayName("Should count created user in signup statistics")
+        void shouldCountCreatedUserInSignupStatistics() {
+            // Given
+            User newUser = new User("newuser", "new@example.com", "New", "User");
+            when(userRepository.existsByUsername("newuser")).thenReturn(false);
+            when(userRepository.existsByEmail("new@example.com")).thenReturn(false);
+            when(userRepository.save(newUser)).thenReturn(newUser);
+
+            // When
+            userService.createUser(newUser);
+
+            // Then
+            verify(userStatsRepository).adjust(newUser.getCreatedAt(), 1);
+        }
+
+        @Test
+        @DisplayName("Should not count conflicting user in signup statistics")
+        void shouldNotCountConflictingUserInSignupStatistics() {
+            // Given
+            User newUser = new User("testuser", "new@example.com", "New", "User");
+            when(userRepository.existsByUsername("testuser")).thenReturn(true);
+
+            // When & Then
+            assertThrows(UserConflictException.class, () -> userService.createUser(newUser));
+            verifyNoInteractions(userStatsRepository);
+        }
+
+        @Test
+        @DisplayName("Should remove deleted user from signup statistics")
+        void shouldRemoveDeletedUserFromSignupStatistics() {
+            // Given
+            when(userRepository.findById(1L)).thenReturn(Optional.of(testUser));
+
+            // When
+            userService.deleteUser(1L);
+
+            // Then
+            verify(userStatsRepository).adjust(testUser.getCreatedAt(), -1);
+        }
+
+        @Test
+        @DisplayName("Should not capture stack traces for expected outcomes")
+        void shouldNotCaptureStackTracesForExpectedOutcomes() {
+            // Given
+            when(userRepository.findById(999L)).thenReturn(Optional.empty());
+
+            // When
+            UserNotFoundException exception = assertThrows(UserNotFoundException.class, 
+                () -> userService.deleteUser(999L));
+
+            // Then
+            assertEquals(0, exception.getStackTrace().length);
+            assertEquals(999L, exception.getId());
         }
 
         @Test
@@ -511,7 +740,7 @@ class FlywayDemoApplicationTest {
             // Given
             User newUser = new User("testuser", "test@example.com", "Test", "User");
             when(userService.createUser(any(User.class)))
-                .thenThrow(new RuntimeException("Username already exists"));
+                .thenThrow(new UserConflictException(UserConflictException.Field.USERNAME, "testuser"));
 
             // When & Then
             mockMvc.perform(post("/api/users")
@@ -522,6 +751,38 @@ class FlywayDemoApplicationTest {
             verify(userService).createUser(any(User.class));
         }
 
+        @Test
+        @DisplayName("Should return conflict when a concurrent signup wins the unique index")
+        void shouldReturnConflictWhenConcurrentSignupWinsUniqueIndex() throws Exception {
+            // Given
+            User newUser = new User("testuser", "test@example.com", "Test", "User");
+            when(userService.createUser(any(User.class)))
+                .thenThrow(new DataIntegrityViolationException("Unique index violation",
+                    new SQLException("Unique index or primary key violation: PUBLIC.USERS(USERNAME NULLS FIRST)", "23505")));
+
+            // When & Then
+            mockMvc.perform(post("/api/users")
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .content(objectMapper.writeValueAsString(newUser)))
+                .andExpect(status().isConflict());
+        }
+
+        @Test
+        @DisplayName("Should return bad request when the row breaks a non-unique constraint")
+        void shouldReturnBadRequestWhenRowBreaksNonUniqueConstraint() throws Exception {
+            // Given
+            User newUser = new User("testuser", "test@example.com", "Test", "User");
+            when(userService.createUser(any(User.class)))
+                .thenThrow(new DataIntegrityViolationException("Value too long",
+                    new SQLException("Value too long for column \"USERNAME CHARACTER VARYING(255)\"", "22001")));
+
+            // When & Then
+            mockMvc.perform(post("/api/users")
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .content(objectMapper.writeValueAsString(newUser)))
+                .andExpect(status().isBadRequest());
+        }
+
         @Test
         @DisplayName("Should update user successfully")
         void shouldUpdateUserSuccessfully() throws Exception {
@@ -550,7 +811,7 @@ class FlywayDemoApplicationTest {
             // Given
             User updatedUser = new User("updateduser", "updated@example.com", "Updated", "User");
             when(userService.updateUser(eq(999L), any(User.class)))
-                .thenThrow(new RuntimeException("User not found with id: 999"));
+                .thenThrow(new UserNotFoundException(999L));
 
             // When & Then
             mockMvc.perform(put("/api/users/999")
@@ -561,6 +822,40 @@ class FlywayDemoApplicationTest {
             verify(userService).updateUser(eq(999L), any(User.class));
         }
 
+        @Test
+        @DisplayName("Should return conflict when updating user with duplicate email")
+        void shouldReturnConflictWhenUpdatingUserWithDuplicateEmail() throws Exception {
+            // Given
+            User updatedUser = new User("testuser", "taken@example.com", "Test", "User");
+            when(userService.updateUser(eq(1L), any(User.class)))
+                .thenThrow(new UserConflictException(UserConflictException.Field.EMAIL, "taken@example.com"));
+
+            // When & Then
+            mockMvc.perform(put("/api/users/1")
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .content(objectMapper.writeValueAsString(updatedUser)))
+                .andExpect(status().isConflict());
+
+            verify(userService).updateUser(eq(1L), any(User.class));
+        }
+
+        @Test
+        @DisplayName("Should return internal server error for unexpected update failure")
+        void shouldReturnInternalServerErrorForUnexpectedUpdateFailure() throws Exception {
+            // Given
+            User updatedUser = new User("testuser", "test@example.com", "Test", "User");
+            when(userService.updateUser(eq(1L), any(User.class)))
+                .thenThrow(new RuntimeException("Database error: row not found"));
+
+            // When & Then
+            mockMvc.perform(put("/api/users/1")
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .content(objectMapper.writeValueAsString(updatedUser)))
+                .andExpect(status().isInternalServerError());
+
+            verify(userService).updateUser(eq(1L), any(User.class));
+        }
+
         @Test
         @DisplayName("Should delete user successfully")
         void shouldDeleteUserSuccessfully() throws Exception {
@@ -578,7 +873,7 @@ class FlywayDemoApplicationTest {
         @DisplayName("Should return not found when deleting non-existent user")
         void shouldReturnNotFoundWhenDeletingNonExistentUser() throws Exception {
             // Given
-            doThrow(new RuntimeException("User not found")).when(userService).deleteUser(999L);
+            doThrow(new UserNotFoundException(999L)).when(userService).deleteUser(999L);
 
             // When & Then
             mockMvc.perform(delete("/api/users/999"))
@@ -587,6 +882,28 @@ class FlywayDemoApplicationTest {
             verify(userService).deleteUser(999L);
         }
 
+        @Test
+        @DisplayName("Should get signup statistics for requested window")
+        void shouldGetSignupStatisticsForRequestedWindow() throws Exception {
+            // Given
+            LocalDateTime from = LocalDateTime.of(2024, 1, 1, 0, 0);
+            LocalDateTime to = LocalDateTime.of(2024, 1, 2, 0, 0);
+            SignupCount bucket = new SignupCount(LocalDateTime.of(2024, 1, 1, 9, 0), 3);
+            when(userService.getUserStats(from, to)).thenReturn(new UserStats(42, List.of(
+                new SignupCount(from, 3)), List.of(bucket)));
+
+            // When & Then
+            mockMvc.perform(get("/api/users/stats")
+                    .param("from", "2024-01-01T00:00:00")
+                    .param("to", "2024-01-02T00:00:00"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.total").value(42))
+                .andExpect(jsonPath("$.perDay[0].count").value(3))
+                .andExpect(jsonPath("$.perHour.length()").value(1));
+
+            verify(userService).getUserStats(from, to);
+        }
+
         @Test
         @DisplayName("Should get user by username successfully")
         void shouldGetUserByUsernameSuccessfully() throws Exception {
@@ -624,6 +941,12 @@ class FlywayDemoApplicationTest {
     @DisplayName("Integration Tests")
     class IntegrationTests {
 
+        @Autowired
+        private AdmissionControl admissionControl;
+
+        @Autowired
+        private DataSource dataSource;
+
         @Test
         @DisplayName("Should load Spring context successfully")
         void shouldLoadSpringContextSuccessfully() {
@@ -639,5 +962,1679 @@ class FlywayDemoApplicationTest {
             // For now, it's a placeholder for more detailed integration tests
             assertTrue(true, "All required beans are present");
         }
+
+        @Test
+        @DisplayName("Should admit no more concurrent requests than the pool has connections")
+        void shouldAdmitNoMoreConcurrentRequestsThanPoolHasConnections() throws Exception {
+            int poolSize = dataSource.unwrap(HikariDataSource.class).getMaximumPoolSize();
+            assertEquals(poolSize, admissionControl.maxConcurrentRequests());
+        }
+
+        @Test
+        @DisplayName("Should leave JDBC calls unproxied unless slow-query capture is enabled")
+        void shouldLeaveJdbcCallsUnproxiedUnlessSlowQueryCaptureIsEnabled() {
+            assertInstanceOf(HikariDataSource.class, dataSource);
+        }
+    }
+
+    // ==================== RESPONSE ENCODING TESTS ====================
+    @Nested
+    @SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+        properties = "users.admission.enabled=false")
+    @DisplayName("Response Encoding Tests")
+    class ResponseEncodingTests {
+
+        @LocalServerPort
+        private int port;
+
+        @Autowired
+        private UserRepository userRepository;
+
+        private final HttpClient httpClient = HttpClient.newHttpClient();
+
+        @BeforeEach
+        void setUp() {
+            userRepository.deleteAll();
+            for (int i = 0; i < 50; i++) {
+                userRepository.save(new User("encoding" + i, "encoding" + i + "@example.com", "First" + i, "Last" + i));
+            }
+        }
+
+        @AfterEach
+        void tearDown() {
+            userRepository.deleteAll();
+        }
+
+        private HttpResponse<byte[]> fetchUsers(String accept, String acceptEncoding) throws Exception {
+            HttpRequest.Builder request = HttpRequest.newBuilder(URI.create("http://localhost:" + port + "/api/users"))
+                .header("Accept", accept);
+            if (acceptEncoding != null) {
+                request.header("Accept-Encoding", acceptEncoding);
+            }
+            return httpClient.send(request.build(), HttpResponse.BodyHandlers.ofByteArray());
+        }
+
+        @Test
+        @DisplayName("Should gzip large JSON list when client accepts gzip")
+        void shouldGzipLargeJsonListWhenClientAcceptsGzip() throws Exception {
+            // When
+            HttpResponse<byte[]> response = fetchUsers("application/json", "gzip");
+
+            // Then
+            assertEquals(200, response.statusCode());
+            assertEquals(Optional.of("gzip"), response.headers().firstValue("Content-Encoding"));
+            try (GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(response.body()))) {
+                String json = new String(in.readAllBytes(), StandardCharsets.UTF_8);
+                assertTrue(json.contains("\"username\":\"encoding0\""));
+            }
+        }
+
+        @Test
+        @DisplayName("Should not compress when client does not accept gzip")
+        void shouldNotCompressWhenClientDoesNotAcceptGzip() throws Exception {
+            // When
+            HttpResponse<byte[]> response = fetchUsers("application/json", null);
+
+            // Then
+            assertEquals(200, response.statusCode());
+            assertFalse(response.headers().firstValue("Content-Encoding").isPresent());
+            assertTrue(new String(response.body(), StandardCharsets.UTF_8).contains("encoding49@example.com"));
+        }
+
+        @Test
+        @DisplayName("Should return CBOR when client requests it")
+        void shouldReturnCborWhenClientRequestsIt() throws Exception {
+            // When
+            HttpResponse<byte[]> response = fetchUsers("application/cbor", null);
+
+            // Then
+            assertEquals(200, response.statusCode());
+            assertEquals(Optional.of("application/cbor"), response.headers().firstValue("Content-Type"));
+            JsonNode users = new ObjectMapper(new CBORFactory()).readTree(response.body());
+            assertTrue(users.isArray());
+            assertEquals(50, users.size());
+            assertTrue(users.get(0).get("createdAt").isTextual());
+        }
+
+        @Test
+        @DisplayName("Should serve HTTP/2 cleartext when client upgrades")
+        void shouldServeHttp2CleartextWhenClientUpgrades() throws Exception {
+            // When
+            HttpResponse<byte[]> response = fetchUsers("application/json", null);
+
+            // Then
+            assertEquals(200, response.statusCode());
+            assertEquals(HttpClient.Version.HTTP_2, response.version());
+        }
+    }
+
+    // ==================== ADMISSION CONTROL TESTS ====================
+    @Nested
+    @DisplayName("Admission Control Tests")
+    class AdmissionControlTests {
+
+        private SimpleMeterRegistry meterRegistry;
+        private AdmissionControlFilter filter;
+
+        @BeforeEach
+        void setUp() {
+            meterRegistry = new SimpleMeterRegistry();
+            // 1 in-flight request, listing at 1/s with a burst of 2, generous lookup and write budgets
+            filter = new AdmissionControlFilter(
+                new AdmissionControl(1, 10, "X-Client-Id", 100, 1, 2, 1000, 1000, 1000, 1000, meterRegistry));
+        }
+
+        private MockHttpServletResponse perform(String method, String uri, String client, FilterChain chain)
+                throws Exception {
+            MockHttpServletRequest request = new MockHttpServletRequest(method, uri);
+            request.addHeader("X-Client-Id", client);
+            MockHttpServletResponse response = new MockHttpServletResponse();
+            filter.doFilter(request, response, chain);
+            return response;
+        }
+
+        private double throttled(String budget, String reason) {
+            return meterRegistry.get("users.api.throttled").tag("budget", budget).tag("reason", reason)
+                .counter().count();
+        }
+
+        @Test
+        @DisplayName("Should allow burst then reject until token bucket refills")
+        void shouldAllowBurstThenRejectUntilTokenBucketRefills() {
+            // Given
+            long now = 1_000_000_000L;
+            TokenBucket bucket = new TokenBucket(10, 3, now);
+
+            // When & Then
+            assertEquals(0, bucket.tryAcquire(now));
+            assertEquals(0, bucket.tryAcquire(now));
+            assertEquals(0, bucket.tryAcquire(now));
+            assertEquals(100_000_000L, bucket.tryAcquire(now));
+            assertFalse(bucket.isFull(now));
+            assertEquals(0, bucket.tryAcquire(now + 100_000_000L));
+            assertTrue(bucket.isFull(now + 1_000_000_000L));
+        }
+
+        @Test
+        @DisplayName("Should rate limit full listing per client")
+        void shouldRateLimitFullListingPerClient() throws Exception {
+            // Given
+            perform("GET", "/api/users", "batch-client", new MockFilterChain());
+            perform("GET", "/api/users", "batch-client", new MockFilterChain());
+
+            // When
+            MockHttpServletResponse throttledResponse = perform("GET", "/api/users", "batch-client", new MockFilterChain());
+            MockHttpServletResponse otherClient = perform("GET", "/api/users", "other-client", new MockFilterChain());
+
+            // Then
+            assertEquals(429, throttledResponse.getStatus());
+            assertEquals("1", throttledResponse.getHeader("Retry-After"));
+            assertEquals(200, otherClient.getStatus());
+            assertEquals(1.0, throttled("list", "rate_limit"));
+        }
+
+        @Test
+        @DisplayName("Should keep lookup budget separate from listing budget")
+        void shouldKeepLookupBudgetSeparateFromListingBudget() throws Exception {
+            // Given
+            for (int i = 0; i < 3; i++) {
+                perform("GET", "/api/users", "batch-client", new MockFilterChain());
+            }
+
+            // When
+            MockHttpServletResponse lookupResponse = perform("GET", "/api/users/1", "batch-client", new MockFilterChain());
+
+            // Then
+            assertEquals(200, lookupResponse.getStatus());
+            assertEquals(0.0, throttled("lookup", "rate_limit"));
+        }
+
+        @Test
+        @DisplayName("Should shed load when concurrency limit is reached")
+        void shouldShedLoadWhenConcurrencyLimitIsReached() throws Exception {
+            // Given
+            MockHttpServletResponse[] concurrentResponse = new MockHttpServletResponse[1];
+            FilterChain slowChain = (request, response) -> {
+                try {
+                    concurrentResponse[0] = perform("GET", "/api/users/2", "client-b", new MockFilterChain());
+                } catch (Exception e) {
+                    throw new IllegalStateException(e);
+                }
+            };
+
+            // When
+            MockHttpServletResponse inFlightResponse = perform("GET", "/api/users/1", "client-a", slowChain);
+
+            // Then
+            assertEquals(200, inFlightResponse.getStatus());
+            assertEquals(503, concurrentResponse[0].getStatus());
+            assertEquals(1.0, throttled("lookup", "concurrency"));
+            assertEquals(200, perform("GET", "/api/users/3", "client-b", new MockFilterChain()).getStatus());
+        }
+
+        @Test
+        @DisplayName("Should rate limit the reactive listing and export from the listing budget")
+        void shouldRateLimitReactiveListingAndExportFromListingBudget() throws Exception {
+            // Given
+            perform("GET", "/api/reactive/users", "batch-client", new MockFilterChain());
+            perform("GET", "/api/reactive/users/export", "batch-client", new MockFilterChain());
+
+            // When
+            MockHttpServletResponse throttledResponse = perform("GET", "/api/users", "batch-client", new MockFilterChain());
+
+            // Then
+            assertEquals(429, throttledResponse.getStatus());
+            assertEquals(1.0, throttled("list", "rate_limit"));
+        }
+
+        @Test
+        @DisplayName("Should apply the same policy to WebFlux requests and release the permit on completion")
+        void shouldApplySamePolicyToWebFluxRequests() {
+            // Given
+            AdmissionControl admissionControl =
+                new AdmissionControl(1, 10, "X-Client-Id", 100, 1, 2, 1000, 1000, 1000, 1000, meterRegistry);
+            ReactiveAdmissionControlFilter reactiveFilter = new ReactiveAdmissionControlFilter(admissionControl);
+            WebFilterChain chain = exchange -> Mono.empty();
+
+            // When
+            List<HttpStatusCode> statuses = new ArrayList<>();
+            for (int i = 0; i < 3; i++) {
+                MockServerWebExchange exchange = MockServerWebExchange.from(
+                    MockServerHttpRequest.get("/api/reactive/users").header("X-Client-Id", "batch-client"));
+                reactiveFilter.filter(exchange, chain).block(Duration.ofSeconds(5));
+                statuses.add(exchange.getResponse().getStatusCode());
+            }
+            MockServerWebExchange lookup = MockServerWebExchange.from(
+                MockServerHttpRequest.get("/api/reactive/users/1").header("X-Client-Id", "batch-client"));
+            reactiveFilter.filter(lookup, chain).block(Duration.ofSeconds(5));
+
+            // Then
+            assertEquals(Arrays.asList(null, null, HttpStatus.TOO_MANY_REQUESTS), statuses);
+            assertNull(lookup.getResponse().getStatusCode());
+            assertEquals(1.0, throttled("list", "rate_limit"));
+            assertEquals(0.0, meterRegistry.get("users.api.inflight").gauge().value());
+        }
+
+        @Test
+        @DisplayName("Should not spend the client's tokens on requests shed for concurrency")
+        void shouldNotSpendTokensOnRequestsShedForConcurrency() throws Exception {
+            // Given
+            List<Integer> shedStatuses = new ArrayList<>();
+            FilterChain slowChain = (request, response) -> {
+                try {
+                    for (int i = 0; i < 3; i++) {
+                        shedStatuses.add(perform("GET", "/api/users", "client-b", new MockFilterChain()).getStatus());
+                    }
+                } catch (Exception e) {
+                    throw new IllegalStateException(e);
+                }
+            };
+
+            // When
+            perform("GET", "/api/users/1", "client-a", slowChain);
+
+            // Then the listing burst of 2 is still intact
+            assertEquals(List.of(503, 503, 503), shedStatuses);
+            assertEquals(200, perform("GET", "/api/users", "client-b", new MockFilterChain()).getStatus());
+            assertEquals(200, perform("GET", "/api/users", "client-b", new MockFilterChain()).getStatus());
+            assertEquals(0.0, throttled("list", "rate_limit"));
+        }
+
+        @Test
+        @DisplayName("Should share one bucket among new clients once the tracked-client cap is reached")
+        void shouldShareOneBucketAmongNewClientsOnceCapIsReached() throws Exception {
+            // Given at most one tracked client per budget
+            filter = new AdmissionControlFilter(
+                new AdmissionControl(1, 10, "X-Client-Id", 1, 1, 2, 1000, 1000, 1000, 1000, meterRegistry));
+            perform("GET", "/api/users", "tracked", new MockFilterChain());
+
+            // When rotating client keys
+            int first = perform("GET", "/api/users", "rotated-1", new MockFilterChain()).getStatus();
+            int second = perform("GET", "/api/users", "rotated-2", new MockFilterChain()).getStatus();
+            int third = perform("GET", "/api/users", "rotated-3", new MockFilterChain()).getStatus();
+
+            // Then they draw from one burst instead of getting a fresh one each
+            assertEquals(List.of(200, 200, 429), List.of(first, second, third));
+            assertEquals(200, perform("GET", "/api/users", "tracked", new MockFilterChain()).getStatus());
+        }
+
+        @Test
+        @DisplayName("Should refuse an in-flight limit above the connection pool size")
+        void shouldRefuseInFlightLimitAboveConnectionPoolSize() {
+            assertThrows(IllegalStateException.class,
+                () -> new AdmissionControl(32, 10, "", 100, 1, 2, 1000, 1000, 1000, 1000, meterRegistry));
+        }
+
+        @Test
+        @DisplayName("Should not filter requests outside the users API")
+        void shouldNotFilterRequestsOutsideTheUsersApi() throws Exception {
+            // Given
+            for (int i = 0; i < 5; i++) {
+                perform("GET", "/actuator/health", "batch-client", new MockFilterChain());
+            }
+
+            // When
+            MockHttpServletResponse response = perform("GET", "/actuator/health", "batch-client", new MockFilterChain());
+
+            // Then
+            assertEquals(200, response.getStatus());
+        }
+    }
+
+    // ==================== USER WRITE BATCHER TESTS ====================
+    @Nested
+    @ExtendWith(MockitoExtension.class)
+    @DisplayName("UserWriteBatcher Tests")
+    class UserWriteBatcherTests {
+
+        @Mock
+        private UserService userService;
+
+        @Mock
+        private PlatformTransactionManager transactionManager;
+
+        private UserWriteBatcher batcher;
+
+        @BeforeEach
+        void setUp() {
+            batcher = new UserWriteBatcher(userService, transactionManager, 100, 10, Duration.ofMillis(200),
+                Duration.ofSeconds(5), new SimpleMeterRegistry());
+        }
+
+        @AfterEach
+        void tearDown() throws InterruptedException {
+            batcher.stop();
+        }
+
+        private User savedCopy(User user, long id) {
+            User saved = new User(user.getUsername(), user.getEmail(), user.getFirstName(), user.getLastName());
+            saved.setId(id);
+            return saved;
+        }
+
+        @Test
+        @DisplayName("Should commit queued creates in one transaction")
+        void shouldCommitQueuedCreatesInOneTransaction() throws Exception {
+            // Given
+            when(userService.createUser(any(User.class)))
+                .thenAnswer(invocation -> savedCopy(invocation.getArgument(0), 7L));
+            CompletableFuture<User> first = batcher.submitCreate(new User("first", "first@example.com", "A", "One"));
+            CompletableFuture<User> second = batcher.submitCreate(new User("second", "second@example.com", "B", "Two"));
+            CompletableFuture<User> third = batcher.submitCreate(new User("third", "third@example.com", "C", "Three"));
+
+            // When
+            batcher.start();
+
+            // Then
+            assertEquals("first", first.get(5, TimeUnit.SECONDS).getUsername());
+            assertEquals("second", second.get(5, TimeUnit.SECONDS).getUsername());
+            assertEquals("third", third.get(5, TimeUnit.SECONDS).getUsername());
+            verify(transactionManager, times(1)).commit(any());
+            verify(userService, times(3)).createUser(any(User.class));
+        }
+
+        @Test
+        @DisplayName("Should complete each request with its own outcome")
+        void shouldCompleteEachRequestWithItsOwnOutcome() throws Exception {
+            // Given
+            User duplicate = new User("taken", "taken@example.com", "D", "Up");
+            User fresh = new User("fresh", "fresh@example.com", "F", "Resh");
+            when(userService.createUser(argThat(user -> user != null && user.getUsername().equals("taken"))))
+                .thenThrow(new UserConflictException(UserConflictException.Field.USERNAME, "taken"));
+            when(userService.createUser(argThat(user -> user != null && user.getUsername().equals("fresh"))))
+                .thenReturn(savedCopy(fresh, 8L));
+            when(userService.updateUser(eq(999L), any(User.class))).thenThrow(new UserNotFoundException(999L));
+            CompletableFuture<User> conflict = batcher.submitCreate(duplicate);
+            CompletableFuture<User> created = batcher.submitCreate(fresh);
+            CompletableFuture<User> missing = batcher.submitUpdate(999L, fresh);
+
+            // When
+            batcher.start();
+
+            // Then
+            ExecutionException conflictFailure = assertThrows(ExecutionException.class,
+                () -> conflict.get(5, TimeUnit.SECONDS));
+            assertInstanceOf(UserConflictException.class, conflictFailure.getCause());
+            assertEquals(8L, created.get(5, TimeUnit.SECONDS).getId());
+            ExecutionException missingFailure = assertThrows(ExecutionException.class,
+                () -> missing.get(5, TimeUnit.SECONDS));
+            assertInstanceOf(UserNotFoundException.class, missingFailure.getCause());
+            verify(transactionManager, times(1)).commit(any());
+        }
+
+        @Test
+        @DisplayName("Should replay requests individually when batch commit fails")
+        void shouldReplayRequestsIndividuallyWhenBatchCommitFails() throws Exception {
+            // Given
+            when(userService.createUser(any(User.class)))
+                .thenAnswer(invocation -> savedCopy(invocation.getArgument(0), 9L));
+            doThrow(new RuntimeException("Unique index violation")).doNothing().when(transactionManager).commit(any());
+            CompletableFuture<User> first = batcher.submitCreate(new User("first", "first@example.com", "A", "One"));
+            CompletableFuture<User> second = batcher.submitCreate(new User("second", "second@example.com", "B", "Two"));
+
+            // When
+            batcher.start();
+
+            // Then
+            assertEquals("first", first.get(5, TimeUnit.SECONDS).getUsername());
+            assertEquals("second", second.get(5, TimeUnit.SECONDS).getUsername());
+            verify(transactionManager, times(3)).commit(any());
+            verify(userService, times(4)).createUser(any(User.class));
+        }
+
+        @Test
+        @DisplayName("Should replay creates with a fresh entity and report unique violations as conflicts")
+        void shouldReplayCreatesWithFreshEntityAndReportUniqueViolationsAsConflicts() throws Exception {
+            // Given
+            List<User> attempts = new CopyOnWriteArrayList<>();
+            when(userService.createUser(any(User.class))).thenAnswer(invocation -> {
+                User user = invocation.getArgument(0);
+                attempts.add(user);
+                if (user.getUsername().equals("racer")) {
+                    throw new DataIntegrityViolationException("Unique index violation",
+                        new SQLException("Unique index or primary key violation: PUBLIC.USERS(EMAIL NULLS FIRST)",
+                            "23505"));
+                }
+                return savedCopy(user, 11L);
+            });
+            User winner = new User("winner", "winner@example.com", "W", "In");
+            CompletableFuture<User> created = batcher.submitCreate(winner);
+            CompletableFuture<User> raced = batcher.submitCreate(new User("racer", "racer@example.com", "R", "Ace"));
+
+            // When
+            batcher.start();
+
+            // Then
+            assertEquals(11L, created.get(5, TimeUnit.SECONDS).getId());
+            ExecutionException failure = assertThrows(ExecutionException.class, () -> raced.get(5, TimeUnit.SECONDS));
+            UserConflictException conflict = assertInstanceOf(UserConflictException.class, failure.getCause());
+            assertEquals(UserConflictException.Field.EMAIL, conflict.getField());
+            assertEquals(4, attempts.size());
+            assertTrue(attempts.stream().allMatch(user -> user.getId() == null && user != winner));
+        }
+
+        @Test
+        @DisplayName("Should commit each tenant's writes in its own transaction")
+        void shouldCommitEachTenantsWritesInItsOwnTransaction() throws Exception {
+            // Given
+            Map<String, String> tenantOfUser = new ConcurrentHashMap<>();
+            when(userService.createUser(any(User.class))).thenAnswer(invocation -> {
+                User user = invocation.getArgument(0);
+                tenantOfUser.put(user.getUsername(), String.valueOf(TenantContext.get()));
+                return savedCopy(user, 10L);
+            });
+            CompletableFuture<User> first;
+            CompletableFuture<User> second;
+            CompletableFuture<User> third;
+            try {
+                TenantContext.set("acme");
+                first = batcher.submitCreate(new User("first", "first@example.com", "A", "One"));
+                TenantContext.set("globex");
+                second = batcher.submitCreate(new User("second", "second@example.com", "B", "Two"));
+                TenantContext.set("acme");
+                third = batcher.submitCreate(new User("third", "third@example.com", "C", "Three"));
+            } finally {
+                TenantContext.clear();
+            }
+
+            // When
+            batcher.start();
+
+            // Then
+            CompletableFuture.allOf(first, second, third).get(5, TimeUnit.SECONDS);
+            assertEquals(Map.of("first", "acme", "second", "globex", "third", "acme"), tenantOfUser);
+            verify(transactionManager, times(2)).commit(any());
+        }
+
+        @Test
+        @DisplayName("Should reject writes when queue is full")
+        void shouldRejectWritesWhenQueueIsFull() {
+            // Given
+            UserWriteBatcher tinyBatcher = new UserWriteBatcher(userService, transactionManager, 1, 10,
+                Duration.ofMillis(5), Duration.ofSeconds(5), new SimpleMeterRegistry());
+            tinyBatcher.submitCreate(new User("first", "first@example.com", "A", "One"));
+
+            // When
+            CompletableFuture<User> rejected = tinyBatcher.submitCreate(new User("second", "second@example.com", "B", "Two"));
+
+            // Then
+            assertTrue(rejected.isCompletedExceptionally());
+            ExecutionException failure = assertThrows(ExecutionException.class, rejected::get);
+            assertInstanceOf(WriteQueueFullException.class, failure.getCause());
+            verifyNoInteractions(userService, transactionManager);
+        }
+    }
+
+    // ==================== BATCHED WRITE CONTROLLER TESTS ====================
+    @Nested
+    @ExtendWith(MockitoExtension.class)
+    @DisplayName("UserController Batched Write Tests")
+    class UserControllerBatchedWriteTests {
+
+        @Mock
+        private UserService userService;
+
+        @Mock
+        private UserWriteBatcher userWriteBatcher;
+
+        @InjectMocks
+        private UserController userController;
+
+        private MockMvc mockMvc;
+        private ObjectMapper objectMapper;
+        private User newUser;
+
+        @BeforeEach
+        void setUp() {
+            mockMvc = MockMvcBuilders.standaloneSetup(userController).build();
+            objectMapper = new ObjectMapper();
+            objectMapper.findAndRegisterModules();
+
+            newUser = new User("newuser", "new@example.com", "New", "User");
+        }
+
+        @Test
+        @DisplayName("Should create user through write batcher")
+        void shouldCreateUserThroughWriteBatcher() throws Exception {
+            // Given
+            User createdUser = new User("newuser", "new@example.com", "New", "User");
+            createdUser.setId(3L);
+            when(userWriteBatcher.submitCreate(any(User.class))).thenReturn(CompletableFuture.completedFuture(createdUser));
+
+            // When & Then
+            mockMvc.perform(post("/api/users")
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .content(objectMapper.writeValueAsString(newUser)))
+                .andExpect(status().isCreated())
+                .andExpect(jsonPath("$.id").value(3));
+
+            verify(userService, never()).createUser(any(User.class));
+        }
+
+        @Test
+        @DisplayName("Should return conflict when batched create conflicts")
+        void shouldReturnConflictWhenBatchedCreateConflicts() throws Exception {
+            // Given
+            when(userWriteBatcher.submitCreate(any(User.class))).thenReturn(CompletableFuture.failedFuture(
+                new UserConflictException(UserConflictException.Field.EMAIL, "new@example.com")));
+
+            // When & Then
+            mockMvc.perform(post("/api/users")
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .content(objectMapper.writeValueAsString(newUser)))
+                .andExpect(status().isConflict());
+        }
+
+        @Test
+        @DisplayName("Should return not found when batched update targets missing user")
+        void shouldReturnNotFoundWhenBatchedUpdateTargetsMissingUser() throws Exception {
+            // Given
+            when(userWriteBatcher.submitUpdate(eq(999L), any(User.class)))
+                .thenReturn(CompletableFuture.failedFuture(new UserNotFoundException(999L)));
+
+            // When & Then
+            mockMvc.perform(put("/api/users/999")
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .content(objectMapper.writeValueAsString(newUser)))
+                .andExpect(status().isNotFound());
+        }
+
+        @Test
+        @DisplayName("Should return service unavailable when the batched write does not commit in time")
+        void shouldReturnServiceUnavailableWhenBatchedWriteDoesNotCommitInTime() throws Exception {
+            // Given
+            when(userWriteBatcher.awaitTimeout()).thenReturn(Duration.ofMillis(50));
+            when(userWriteBatcher.submitCreate(any(User.class))).thenReturn(new CompletableFuture<>());
+
+            // When & Then
+            mockMvc.perform(post("/api/users")
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .content(objectMapper.writeValueAsString(newUser)))
+                .andExpect(status().isServiceUnavailable());
+        }
+
+        @Test
+        @DisplayName("Should return service unavailable when write queue is full")
+        void shouldReturnServiceUnavailableWhenWriteQueueIsFull() throws Exception {
+            // Given
+            when(userWriteBatcher.submitCreate(any(User.class)))
+                .thenReturn(CompletableFuture.failedFuture(new WriteQueueFullException()));
+
+            // When & Then
+            mockMvc.perform(post("/api/users")
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .content(objectMapper.writeValueAsString(newUser)))
+                .andExpect(status().isServiceUnavailable());
+        }
+    }
+
+    // ==================== USER WRITE BATCHER INTEGRATION TESTS ====================
+    @Nested
+    @SpringBootTest(properties = {"users.write.batching.enabled=true",
+        "users.write.batching.max-batch-delay=500ms"})
+    @DisplayName("User Write Batcher Integration Tests")
+    class UserWriteBatcherIntegrationTests {
+
+        @Autowired
+        private UserWriteBatcher userWriteBatcher;
+
+        @Autowired
+        private UserRepository userRepository;
+
+        @AfterEach
+        void tearDown() {
+            userRepository.deleteAll();
+        }
+
+        @Test
+        @DisplayName("Should insert the survivors of a rolled-back batch as new rows")
+        void shouldInsertSurvivorsOfRolledBackBatchAsNewRows() throws Exception {
+            // Given a batch whose second insert violates a column constraint
+            CompletableFuture<User> survivor = userWriteBatcher.submitCreate(
+                new User("survivor", "survivor@example.com", "Sur", "Vivor"));
+            CompletableFuture<User> oversized = userWriteBatcher.submitCreate(
+                new User("x".repeat(300), "oversized@example.com", "Over", "Sized"));
+
+            // When
+            User saved = survivor.get(10, TimeUnit.SECONDS);
+
+            // Then the replay inserted the survivor exactly once, under the id it reported
+            ExecutionException failure = assertThrows(ExecutionException.class, () -> oversized.get(10, TimeUnit.SECONDS));
+            assertInstanceOf(DataIntegrityViolationException.class, failure.getCause());
+            List<User> stored = userRepository.findAll();
+            assertEquals(1, stored.size());
+            assertEquals(saved.getId(), stored.get(0).getId());
+            assertEquals("survivor", stored.get(0).getUsername());
+        }
+    }
+
+    // ==================== SAMPLED SQL LOGGING TESTS ====================
+    @Nested
+    @DisplayName("Sampled SQL Logging Tests")
+    class SampledSqlLoggingTests {
+
+        private static final String SQL = "select u1_0.id from users u1_0 where u1_0.id=?";
+
+        @Test
+        @DisplayName("Should return statement unchanged")
+        void shouldReturnStatementUnchanged() {
+            // Given
+            SampledSqlStatementInspector inspector = new SampledSqlStatementInspector(1.0);
+
+            // When & Then
+            assertSame(SQL, inspector.inspect(SQL));
+        }
+
+        @Test
+        @DisplayName("Should never sample at rate zero and always sample at rate one")
+        void shouldNeverSampleAtRateZeroAndAlwaysSampleAtRateOne() {
+            // Given
+            SampledSqlStatementInspector never = new SampledSqlStatementInspector(0.0);
+            SampledSqlStatementInspector always = new SampledSqlStatementInspector(1.0);
+
+            // When & Then
+            for (int i = 0; i < 1000; i++) {
+                assertFalse(never.shouldSample());
+                assertTrue(always.shouldSample());
+            }
+        }
+
+        @Test
+        @DisplayName("Should sample roughly the configured fraction")
+        void shouldSampleRoughlyTheConfiguredFraction() {
+            // Given
+            SampledSqlStatementInspector inspector = new SampledSqlStatementInspector(0.1);
+            int sampled = 0;
+
+            // When
+            for (int i = 0; i < 100_000; i++) {
+                if (inspector.shouldSample()) {
+                    sampled++;
+                }
+            }
+
+            // Then
+            assertTrue(sampled > 8_000 && sampled < 12_000, "sampled " + sampled);
+        }
+    }
+
+    // ==================== PRODUCTION PROFILE TESTS ====================
+    @Nested
+    @SpringBootTest
+    @ActiveProfiles("prod")
+    @DisplayName("Production Profile Tests")
+    class ProductionProfileTests {
+
+        @Autowired
+        private Environment environment;
+
+        @Autowired
+        private List<HibernatePropertiesCustomizer> hibernatePropertiesCustomizers;
+
+        @Test
+        @DisplayName("Should disable synchronous SQL and debug logging")
+        void shouldDisableSynchronousSqlAndDebugLogging() {
+            assertEquals("false", environment.getProperty("spring.jpa.show-sql"));
+            assertEquals("false", environment.getProperty("spring.jpa.properties.hibernate.format_sql"));
+            assertEquals("INFO", environment.getProperty("logging.level.org.springframework.web"));
+            assertEquals("INFO", environment.getProperty("logging.level.com.example.flywaydemo"));
+            assertEquals("200", environment.getProperty("spring.jpa.properties.hibernate.log_slow_query"));
+        }
+
+        @Test
+        @DisplayName("Should route root logger through bounded asynchronous appender")
+        void shouldRouteRootLoggerThroughBoundedAsynchronousAppender() throws Exception {
+            LoggerContext loggerContext = prodLoggerContext();
+            try {
+                ch.qos.logback.classic.Logger root = loggerContext.getLogger(org.slf4j.Logger.ROOT_LOGGER_NAME);
+                AsyncAppender async = assertInstanceOf(AsyncAppender.class, root.getAppender("ASYNC"));
+                assertTrue(async.isNeverBlock());
+                assertEquals(8192, async.getQueueSize());
+                assertNull(root.getAppender("CONSOLE"));
+            } finally {
+                loggerContext.stop();
+            }
+        }
+
+        @Test
+        @DisplayName("Should write each event as one parseable key=value line")
+        @SuppressWarnings("unchecked")
+        void shouldWriteEachEventAsOneParseableKeyValueLine() throws Exception {
+            LoggerContext loggerContext = prodLoggerContext();
+            try {
+                // Given
+                ch.qos.logback.classic.Logger root = loggerContext.getLogger(org.slf4j.Logger.ROOT_LOGGER_NAME);
+                AsyncAppender async = (AsyncAppender) root.getAppender("ASYNC");
+                ConsoleAppender<ILoggingEvent> structured = (ConsoleAppender<ILoggingEvent>) async.getAppender("STRUCTURED");
+                ch.qos.logback.classic.Logger logger = loggerContext.getLogger("com.example.flywaydemo.Test");
+
+                // When
+                String plain = new String(structured.getEncoder().encode(new LoggingEvent(null, logger, Level.INFO,
+                    "user=\"bob\" path=C:\\tmp\nnext", null, null)), StandardCharsets.UTF_8);
+                String failed = new String(structured.getEncoder().encode(new LoggingEvent(null, logger, Level.ERROR,
+                    "write failed", new IllegalStateException("bad \"row\""), null)), StandardCharsets.UTF_8);
+
+                // Then
+                assertTrue(plain.endsWith(" msg=\"user=\\\"bob\\\" path=C:\\\\tmp\\nnext\"" + System.lineSeparator()), plain);
+                assertFalse(plain.contains("exception="), plain);
+                assertEquals(1, failed.lines().count(), failed);
+                assertTrue(failed.contains(" msg=\"write failed\" exception=\"java.lang.IllegalStateException: bad \\\"row\\\"\\n"),
+                    failed);
+            } finally {
+                loggerContext.stop();
+            }
+        }
+
+        // A private logger context: the shared one keeps whichever configuration the first
+        // application context in this JVM applied, so it depends on test order
+        private LoggerContext prodLoggerContext() throws Exception {
+            LoggerContext loggerContext = new LoggerContext();
+            Constructor<?> springConfigurator = ClassUtils.forName(
+                    "org.springframework.boot.logging.logback.SpringBootJoranConfigurator", null)
+                .getDeclaredConstructor(LoggingInitializationContext.class);
+            JoranConfigurator configurator = (JoranConfigurator) BeanUtils.instantiateClass(springConfigurator,
+                new LoggingInitializationContext((ConfigurableEnvironment) environment));
+            configurator.setContext(loggerContext);
+            configurator.doConfigure(new ClassPathResource("logback-spring.xml").getURL());
+            return loggerContext;
+        }
+
+        @Test
+        @DisplayName("Should register sampled SQL statement inspector")
+        void shouldRegisterSampledSqlStatementInspector() {
+            Map<String, Object> properties = new HashMap<>();
+            hibernatePropertiesCustomizers.forEach(customizer -> customizer.customize(properties));
+            assertInstanceOf(SampledSqlStatementInspector.class,
+                properties.get("hibernate.session_factory.statement_inspector"));
+        }
+    }
+
+    // ==================== REACTIVE USER CONTROLLER TESTS ====================
+    @Nested
+    @ExtendWith(MockitoExtension.class)
+    @DisplayName("ReactiveUserController Tests")
+    class ReactiveUserControllerTests {
+
+        @Mock
+        private ReactiveUserService reactiveUserService;
+
+        @InjectMocks
+        private ReactiveUserController reactiveUserController;
+
+        private WebTestClient webTestClient;
+        private User testUser;
+        private User anotherUser;
+
+        @BeforeEach
+        void setUp() {
+            webTestClient = WebTestClient.bindToController(reactiveUserController).build();
+
+            testUser = new User("testuser", "test@example.com", "John", "Doe");
+            testUser.setId(1L);
+            anotherUser = new User("anotheruser", "another@example.com", "Jane", "Smith");
+            anotherUser.setId(2L);
+        }
+
+        @Test
+        @DisplayName("Should get all users")
+        void shouldGetAllUsers() {
+            // Given
+            when(reactiveUserService.getAllUsers()).thenReturn(Flux.just(testUser, anotherUser));
+
+            // When & Then
+            webTestClient.get().uri("/api/reactive/users")
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$[0].username").isEqualTo("testuser")
+                .jsonPath("$[1].username").isEqualTo("anotheruser");
+        }
+
+        @Test
+        @DisplayName("Should stream export as newline-delimited JSON")
+        void shouldStreamExportAsNewlineDelimitedJson() {
+            // Given
+            when(reactiveUserService.getAllUsers()).thenReturn(Flux.just(testUser, anotherUser));
+
+            // When & Then
+            webTestClient.get().uri("/api/reactive/users/export")
+                .accept(MediaType.APPLICATION_NDJSON)
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().contentTypeCompatibleWith(MediaType.APPLICATION_NDJSON)
+                .expectBodyList(User.class).hasSize(2);
+        }
+
+        @Test
+        @DisplayName("Should return not found when user does not exist")
+        void shouldReturnNotFoundWhenUserDoesNotExist() {
+            // Given
+            when(reactiveUserService.getUserById(999L)).thenReturn(Mono.empty());
+
+            // When & Then
+            webTestClient.get().uri("/api/reactive/users/999")
+                .exchange()
+                .expectStatus().isNotFound();
+        }
+
+        @Test
+        @DisplayName("Should return conflict when creating duplicate user")
+        void shouldReturnConflictWhenCreatingDuplicateUser() {
+            // Given
+            when(reactiveUserService.createUser(any(User.class))).thenReturn(
+                Mono.error(new UserConflictException(UserConflictException.Field.USERNAME, "testuser")));
+
+            // When & Then
+            webTestClient.post().uri("/api/reactive/users")
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(testUser)
+                .exchange()
+                .expectStatus().isEqualTo(409);
+        }
+
+        @Test
+        @DisplayName("Should return not found when deleting non-existent user")
+        void shouldReturnNotFoundWhenDeletingNonExistentUser() {
+            // Given
+            when(reactiveUserService.deleteUser(999L)).thenReturn(Mono.error(new UserNotFoundException(999L)));
+
+            // When & Then
+            webTestClient.delete().uri("/api/reactive/users/999")
+                .exchange()
+                .expectStatus().isNotFound();
+        }
+    }
+
+    // ==================== REACTIVE REPOSITORY INTEGRATION TESTS ====================
+    @Nested
+    @SpringBootTest
+    @DisplayName("Reactive Repository Integration Tests")
+    class ReactiveRepositoryIntegrationTests {
+
+        @Autowired
+        private ReactiveUserRepository reactiveUserRepository;
+
+        @Autowired
+        private UserRepository userRepository;
+
+        @Autowired
+        private JdbcTemplate jdbcTemplate;
+
+        @AfterEach
+        void tearDown() {
+            userRepository.deleteAll();
+            jdbcTemplate.update("DELETE FROM users_archive");
+        }
+
+        @Test
+        @DisplayName("Should share the Flyway-managed users table with JPA")
+        void shouldShareTheFlywayManagedUsersTableWithJpa() {
+            // Given
+            User inserted = reactiveUserRepository.insert(new User("reactive", "reactive@example.com", "Re", "Active"))
+                .block(Duration.ofSeconds(5));
+            User saved = userRepository.save(new User("blocking", "blocking@example.com", "Blo", "Cking"));
+
+            // When
+            Optional<User> seenByJpa = userRepository.findByUsername("reactive");
+            User seenByR2dbc = reactiveUserRepository.findById(saved.getId()).block(Duration.ofSeconds(5));
+
+            // Then
+            assertNotNull(inserted.getId());
+            assertTrue(seenByJpa.isPresent());
+            assertEquals(inserted.getId(), seenByJpa.get().getId());
+            assertNotNull(seenByR2dbc);
+            assertEquals("blocking@example.com", seenByR2dbc.getEmail());
+            assertEquals(Boolean.TRUE, reactiveUserRepository.existsByEmail("reactive@example.com").block(Duration.ofSeconds(5)));
+            assertEquals(List.of("blocking", "reactive"), reactiveUserRepository.findAll().map(User::getUsername)
+                .collectSortedList().block(Duration.ofSeconds(5)));
+        }
+
+        @Test
+        @DisplayName("Should refuse an R2DBC URL that opens a different database than the DataSource")
+        void shouldRefuseAnR2dbcUrlThatOpensADifferentDatabaseThanTheDataSource() {
+            // Given
+            String jdbcUrl = "jdbc:h2:mem:testdb;DB_CLOSE_DELAY=-1";
+
+            // When & Then
+            assertEquals("mem:testdb", ReactiveUserRepository.databaseOf("r2dbc:pool:h2:mem:///testdb?maxSize=20"));
+            assertEquals("mem:testdb", ReactiveUserRepository.databaseOf(jdbcUrl));
+            assertThrows(IllegalStateException.class,
+                () -> new ReactiveUserRepository("r2dbc:pool:h2:mem:///otherdb", jdbcUrl, "sa", ""));
+        }
+
+        @Test
+        @DisplayName("Should promote archived users and report misses in both tiers")
+        void shouldPromoteArchivedUsersAndReportMissesInBothTiers() {
+            // Given
+            User archived = userRepository.save(new User("archived", "archived@example.com", "Ar", "Chived"));
+            jdbcTemplate.update("INSERT INTO users_archive (id, username, email, first_name, last_name, created_at, " +
+                "updated_at) SELECT id, username, email, first_name, last_name, created_at, updated_at FROM users " +
+                "WHERE id = ?", archived.getId());
+            jdbcTemplate.update("DELETE FROM users WHERE id = ?", archived.getId());
+
+            // When
+            Boolean missing = reactiveUserRepository.promoteByEmail("nobody@example.com").block(Duration.ofSeconds(5));
+            Boolean promoted = reactiveUserRepository.promoteByEmail("archived@example.com").block(Duration.ofSeconds(5));
+
+            // Then
+            assertEquals(Boolean.FALSE, missing);
+            assertEquals(Boolean.TRUE, promoted);
+            assertTrue(userRepository.existsById(archived.getId()));
+            assertEquals(0, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM users_archive", Long.class));
+        }
+    }
+
+    // ==================== USER STATS INTEGRATION TESTS ====================
+    @Nested
+    @SpringBootTest
+    @DisplayName("User Stats Integration Tests")
+    class UserStatsIntegrationTests {
+
+        @Autowired
+        private UserService userService;
+
+        @Autowired
+        private UserStatsReconciler userStatsReconciler;
+
+        @Autowired
+        private UserStatsRepository userStatsRepository;
+
+        @Autowired
+        private UserRepository userRepository;
+
+        @Autowired
+        private JdbcTemplate jdbcTemplate;
+
+        @BeforeEach
+        void setUp() {
+            userRepository.deleteAll();
+            jdbcTemplate.update("DELETE FROM user_signup_stats");
+        }
+
+        @AfterEach
+        void tearDown() {
+            setUp();
+        }
+
+        @Test
+        @DisplayName("Should keep incremental rollup equal to a full rebuild")
+        void shouldKeepIncrementalRollupEqualToFullRebuild() {
+            // Given
+            LocalDateTime now = LocalDateTime.now();
+            User first = new User("stats1", "stats1@example.com", "Stats", "One");
+            first.setCreatedAt(now.minusDays(2));
+            User second = new User("stats2", "stats2@example.com", "Stats", "Two");
+            second.setCreatedAt(now.minusDays(2));
+            User third = new User("stats3", "stats3@example.com", "Stats", "Three");
+            userService.createUser(first);
+            userService.createUser(second);
+            User deleted = userService.createUser(third);
+            userService.deleteUser(deleted.getId());
+            assertThrows(UserConflictException.class,
+                () -> userService.createUser(new User("stats1", "other@example.com", "Dup", "User")));
+
+            // When
+            List<SignupCount> incremental = userStatsRepository.perHour(now.minusDays(7), now.plusHours(1));
+            long incrementalTotal = userStatsRepository.total();
+            userStatsReconciler.rebuild();
+            List<SignupCount> rebuilt = userStatsRepository.perHour(now.minusDays(7), now.plusHours(1));
+
+            // Then
+            assertEquals(2, incrementalTotal);
+            assertEquals(userStatsRepository.total(), incrementalTotal);
+            assertEquals(rebuilt, incremental.stream().filter(bucket -> bucket.count() != 0).toList());
+            assertEquals(2, userService.getUserStats(now.minusDays(7), now).perDay().get(0).count());
+        }
+    }
+
+    // ==================== USER ARCHIVE INTEGRATION TESTS ====================
+    @Nested
+    @SpringBootTest
+    @DisplayName("User Archive Integration Tests")
+    class UserArchiveIntegrationTests {
+
+        @Autowired
+        private UserService userService;
+
+        @Autowired
+        private UserArchiver userArchiver;
+
+        @Autowired
+        private UserArchiveRepository userArchiveRepository;
+
+        @Autowired
+        private UserRepository userRepository;
+
+        @Autowired
+        private JdbcTemplate jdbcTemplate;
+
+        @BeforeEach
+        void setUp() {
+            userRepository.deleteAll();
+            jdbcTemplate.update("DELETE FROM users_archive");
+        }
+
+        @AfterEach
+        void tearDown() {
+            setUp();
+        }
+
+        @Test
+        @DisplayName("Should archive inactive users and promote them back on lookup")
+        void shouldArchiveInactiveUsersAndPromoteThemBackOnLookup() {
+            // Given
+            User cold = userService.createUser(new User("cold", "cold@example.com", "Cold", "User"));
+            userService.createUser(new User("hot", "hot@example.com", "Hot", "User"));
+            jdbcTemplate.update("UPDATE users SET updated_at = ? WHERE id = ?",
+                LocalDateTime.now().minusYears(3), cold.getId());
+
+            // When
+            int archived = userArchiver.archiveInactiveUsers();
+
+            // Then
+            assertEquals(1, archived);
+            assertFalse(userRepository.existsByUsername("cold"));
+            assertEquals(1, userArchiveRepository.count());
+            assertEquals(2, userService.getAllUsers().size());
+            assertThrows(UserConflictException.class,
+                () -> userService.createUser(new User("cold", "other@example.com", "Dup", "User")));
+
+            Optional<User> promoted = userService.getUserByUsername("cold");
+            assertTrue(promoted.isPresent());
+            assertEquals(cold.getId(), promoted.get().getId());
+            assertTrue(userRepository.existsByUsername("cold"));
+            assertEquals(0, userArchiveRepository.count());
+            assertTrue(promoted.get().getUpdatedAt().isAfter(LocalDateTime.now().minusDays(1)));
+        }
+    }
+
+    // ==================== USER DIRECTORY SNAPSHOT TESTS ====================
+    @Nested
+    @DisplayName("UserDirectorySnapshot Tests")
+    class UserDirectorySnapshotTests {
+
+        @TempDir
+        private Path tempDir;
+
+        private User user(long id, String username, String email) {
+            User user = new User(username, email, "First" + id, null);
+            user.setId(id);
+            user.setCreatedAt(LocalDateTime.of(2024, 1, 1, 12, 0, 0, 123_456_000));
+            user.setUpdatedAt(LocalDateTime.of(2024, 1, (int) id, 12, 0));
+            return user;
+        }
+
+        private UserDirectorySnapshot write(Path path, User... users) throws Exception {
+            try (UserDirectorySnapshot.SnapshotWriter writer = UserDirectorySnapshot.writer(path)) {
+                for (User user : users) {
+                    writer.add(user);
+                }
+                writer.commit();
+            }
+            return UserDirectorySnapshot.open(path);
+        }
+
+        @Test
+        @DisplayName("Should look up users by id, username and email")
+        void shouldLookUpUsersByIdUsernameAndEmail() throws Exception {
+            // Given
+            Path path = tempDir.resolve("users.snapshot");
+
+            // When
+            UserDirectorySnapshot snapshot = write(path, user(1, "alice", "alice@example.com"),
+                user(5, "bob", "bob@example.com"), user(9, "carol", "carol@example.com"));
+
+            // Then
+            assertEquals(3, snapshot.count());
+            assertEquals(LocalDateTime.of(2024, 1, 9, 12, 0), snapshot.watermark());
+            User bob = snapshot.findById(5).orElseThrow();
+            assertEquals("bob", bob.getUsername());
+            assertEquals("First5", bob.getFirstName());
+            assertNull(bob.getLastName());
+            assertEquals(LocalDateTime.of(2024, 1, 1, 12, 0, 0, 123_456_000), bob.getCreatedAt());
+            assertEquals(9L, snapshot.findByUsername("carol").orElseThrow().getId());
+            assertEquals(1L, snapshot.findByEmail("alice@example.com").orElseThrow().getId());
+            assertTrue(snapshot.findById(4).isEmpty());
+            assertTrue(snapshot.findByUsername("dave").isEmpty());
+            try (var files = Files.list(tempDir)) {
+                assertFalse(files.anyMatch(file -> file.toString().endsWith(".tmp")));
+            }
+        }
+
+        @Test
+        @DisplayName("Should tell apart usernames with the same hash code")
+        void shouldTellApartUsernamesWithTheSameHashCode() throws Exception {
+            // Given
+            assertEquals("Aa".hashCode(), "BB".hashCode());
+
+            // When
+            UserDirectorySnapshot snapshot = write(tempDir.resolve("users.snapshot"),
+                user(1, "Aa", "aa@example.com"), user(2, "BB", "bb@example.com"));
+
+            // Then
+            assertEquals(1L, snapshot.findByUsername("Aa").orElseThrow().getId());
+            assertEquals(2L, snapshot.findByUsername("BB").orElseThrow().getId());
+            assertTrue(snapshot.findByUsername("C#").isEmpty());
+        }
+
+        @Test
+        @DisplayName("Should reject files that are not complete snapshots")
+        void shouldRejectFilesThatAreNotCompleteSnapshots() throws Exception {
+            // Given
+            Path foreign = tempDir.resolve("foreign.snapshot");
+            Files.write(foreign, new byte[UserDirectorySnapshot.HEADER_SIZE]);
+            Path truncated = tempDir.resolve("truncated.snapshot");
+            write(truncated, user(1, "alice", "alice@example.com"));
+            byte[] bytes = Files.readAllBytes(truncated);
+            Files.write(truncated, Arrays.copyOf(bytes, bytes.length - 1));
+
+            // When & Then
+            assertThrows(IOException.class, () -> UserDirectorySnapshot.open(foreign));
+            assertThrows(IOException.class, () -> UserDirectorySnapshot.open(truncated));
+        }
+    }
+
+    // ==================== USER DIRECTORY INTEGRATION TESTS ====================
+    @Nested
+    @SpringBootTest(properties = {"users.snapshot.enabled=true",
+        "users.snapshot.path=target/test-snapshots/users-directory.snapshot"})
+    @DisplayName("User Directory Integration Tests")
+    class UserDirectoryIntegrationTests {
+
+        @Autowired
+        private UserService userService;
+
+        @Autowired
+        private UserDirectory userDirectory;
+
+        @Autowired
+        private ReactiveUserService reactiveUserService;
+
+        @Autowired
+        private UserRepository userRepository;
+
+        @Autowired
+        private JdbcTemplate jdbcTemplate;
+
+        @Autowired
+        private PlatformTransactionManager transactionManager;
+
+        @AfterEach
+        void tearDown() {
+            userRepository.deleteAll();
+            userDirectory.writeSnapshot();
+        }
+
+        @Test
+        @DisplayName("Should serve snapshot hits and catch up on changed rows")
+        void shouldServeSnapshotHitsAndCatchUpOnChangedRows() {
+            // Given
+            User kept = userService.createUser(new User("snap1", "snap1@example.com", "Snap", "One"));
+            User deleted = userService.createUser(new User("snap2", "snap2@example.com", "Snap", "Two"));
+            userDirectory.writeSnapshot();
+
+            // When another instance renames one user and removes the other behind our back
+            jdbcTemplate.update("UPDATE users SET username = 'renamed', updated_at = ? WHERE id = ?",
+                LocalDateTime.now().plusSeconds(1), kept.getId());
+
+            // Then the snapshot still answers until catch-up runs
+            assertEquals("snap1", userService.getUserById(kept.getId()).orElseThrow().getUsername());
+            userDirectory.catchUp();
+            assertEquals("renamed", userService.getUserById(kept.getId()).orElseThrow().getUsername());
+            assertTrue(userDirectory.findByUsername("snap1").isEmpty());
+            assertEquals(kept.getId(), userDirectory.findByUsername("renamed").orElseThrow().getId());
+
+            // And local deletes stop being served immediately
+            userService.deleteUser(deleted.getId());
+            assertTrue(userService.getUserById(deleted.getId()).isEmpty());
+            assertTrue(userService.getUserByEmail("snap2@example.com").isEmpty());
+        }
+
+        @Test
+        @DisplayName("Should apply reactive writes and deletes to the directory")
+        void shouldApplyReactiveWritesAndDeletesToTheDirectory() {
+            // Given
+            User renamed = userService.createUser(new User("blocking", "blocking@example.com", "Blo", "Cking"));
+            User removed = userService.createUser(new User("doomed", "doomed@example.com", "Doo", "Med"));
+            userDirectory.writeSnapshot();
+
+            // When
+            User created = reactiveUserService.createUser(new User("reactive", "reactive@example.com", "Re", "Active"))
+                .block(Duration.ofSeconds(5));
+            reactiveUserService.updateUser(renamed.getId(), new User("renamed", "blocking@example.com", "Blo", "Cking"))
+                .block(Duration.ofSeconds(5));
+            reactiveUserService.deleteUser(removed.getId()).block(Duration.ofSeconds(5));
+
+            // Then the blocking API's snapshot reads see them without waiting for catch-up
+            assertEquals(created.getId(), userDirectory.findByUsername("reactive").orElseThrow().getId());
+            assertEquals("renamed", userService.getUserById(renamed.getId()).orElseThrow().getUsername());
+            assertTrue(userDirectory.findByUsername("blocking").isEmpty());
+            assertTrue(userDirectory.findById(removed.getId()).isEmpty());
+            assertTrue(userService.getUserByEmail("doomed@example.com").isEmpty());
+        }
+
+        @Test
+        @DisplayName("Should keep serving a user whose delete rolled back")
+        void shouldKeepServingUserWhoseDeleteRolledBack() {
+            // Given
+            User kept = userService.createUser(new User("kept", "kept@example.com", "Kept", "User"));
+            userDirectory.writeSnapshot();
+
+            // When
+            new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+                userService.deleteUser(kept.getId());
+                status.setRollbackOnly();
+            });
+
+            // Then
+            assertEquals("kept", userDirectory.findById(kept.getId()).orElseThrow().getUsername());
+            assertEquals(kept.getId(), userDirectory.findByEmail("kept@example.com").orElseThrow().getId());
+        }
+    }
+
+    // ==================== DURABLE PROFILE TESTS ====================
+    @Nested
+    @SpringBootTest(properties = "users.durable.path=./target/test-durable/usersdb")
+    @ActiveProfiles("durable")
+    @DisplayName("Durable Profile Tests")
+    class DurableProfileTests {
+
+        @Autowired
+        private Environment environment;
+
+        @Autowired
+        private UserService userService;
+
+        @Autowired
+        private UserRepository userRepository;
+
+        @Autowired
+        private DurableStoreMaintenance durableStoreMaintenance;
+
+        @AfterEach
+        void tearDown() {
+            userRepository.deleteAll();
+        }
+
+        @Test
+        @DisplayName("Should open a tuned file-backed store")
+        void shouldOpenTunedFileBackedStore() {
+            String url = environment.getProperty("spring.datasource.url");
+            assertTrue(url.startsWith("jdbc:h2:file:./target/test-durable/usersdb;"));
+            assertTrue(url.contains("WRITE_DELAY=500"));
+            assertTrue(url.contains("CACHE_SIZE=65536"));
+            assertTrue(url.contains("DB_CLOSE_ON_EXIT=FALSE"));
+        }
+
+        @Test
+        @DisplayName("Should checkpoint committed users to the database file")
+        void shouldCheckpointCommittedUsersToDatabaseFile() throws IOException {
+            // Given
+            userService.createUser(new User("durable1", "durable1@example.com", "Durable", "One"));
+
+            // When
+            durableStoreMaintenance.checkpoint();
+
+            // Then
+            Path file = Path.of("target/test-durable/usersdb.mv.db");
+            assertTrue(Files.size(file) > 0);
+            assertTrue(userService.getUserByUsername("durable1").isPresent());
+        }
+    }
+
+    // ==================== SLOW QUERY RECORDER TESTS ====================
+    @Nested
+    @DisplayName("SlowQueryRecorder Tests")
+    class SlowQueryRecorderTests {
+
+        @Test
+        @DisplayName("Should normalize literals, bind lists and whitespace into one fingerprint")
+        void shouldNormalizeLiteralsBindListsAndWhitespaceIntoOneFingerprint() {
+            assertEquals("select u1_0.id from users u1_0 where u1_0.username=? and u1_0.id in (?+)",
+                SlowQueryRecorder.fingerprint("SELECT u1_0.id FROM users u1_0\n  WHERE u1_0.username='it''s' AND u1_0.id IN (1, 2, 3)"));
+            assertEquals(SlowQueryRecorder.fingerprint("select * from users where id in (?, ?)"),
+                SlowQueryRecorder.fingerprint("select * from users where id in (?,?,?,?)"));
+        }
+
+        @Test
+        @DisplayName("Should describe bind parameters by type")
+        void shouldDescribeBindParametersByType() {
+            assertEquals("(String, Long, null, unset)", SlowQueryRecorder.shapeOf(
+                new Object[] {"alice", 1L, SlowQueryRecorder.nullParameter(), null}));
+        }
+
+        @Test
+        @DisplayName("Should aggregate latencies per fingerprint and keep slow ones only by default")
+        void shouldAggregateLatenciesPerFingerprint() {
+            // Given
+            SlowQueryRecorder recorder = new SlowQueryRecorder(Duration.ofMillis(10), 100, Duration.ofMinutes(10));
+            try {
+                // When
+                for (int i = 0; i < 98; i++) {
+                    recorder.record("insert into users (username) values (?)", new Object[] {"u" + i},
+                        TimeUnit.MICROSECONDS.toNanos(500), null, null);
+                }
+                recorder.record("insert into users (username) values (?)", new Object[] {"slow"},
+                    TimeUnit.MILLISECONDS.toNanos(40), null, null);
+                recorder.record("insert into users (username) values (?)", new Object[] {null},
+                    TimeUnit.MILLISECONDS.toNanos(80), null, null);
+                recorder.record("select 1", new Object[0], TimeUnit.MICROSECONDS.toNanos(100), null, null);
+
+                // Then
+                List<SlowQueryReport> slow = recorder.report(false);
+                assertEquals(1, slow.size());
+                SlowQueryReport report = slow.get(0);
+                assertEquals(100, report.count());
+                assertEquals(2, report.slowCount());
+                assertTrue(report.p50Millis() <= 1.024);
+                assertTrue(report.p99Millis() >= 40 && report.p99Millis() <= 80);
+                assertEquals(80.0, report.maxMillis(), 0.001);
+                assertEquals(Set.of("(String)", "(unset)"), Set.copyOf(report.parameterShapes()));
+                assertFalse(report.tableScan());
+                assertEquals(2, recorder.report(true).size());
+            } finally {
+                recorder.shutdown();
+            }
+        }
+    }
+
+    // ==================== SLOW QUERY INTEGRATION TESTS ====================
+    @Nested
+    @SpringBootTest(properties = {"users.slow-query.enabled=true", "users.slow-query.threshold=0ms"})
+    @DisplayName("Slow Query Integration Tests")
+    class SlowQueryIntegrationTests {
+
+        @Autowired
+        private SlowQueryRecorder slowQueryRecorder;
+
+        @Autowired
+        private DataSource dataSource;
+
+        @Autowired
+        private UserRepository userRepository;
+
+        @Autowired
+        private JdbcTemplate jdbcTemplate;
+
+        @BeforeEach
+        void setUp() {
+            slowQueryRecorder.reset();
+        }
+
+        @AfterEach
+        void tearDown() {
+            userRepository.deleteAll();
+        }
+
+        @Test
+        @DisplayName("Should capture plans and flag lookups that miss the users indexes")
+        void shouldCapturePlansAndFlagLookupsThatMissTheUsersIndexes() throws Exception {
+            // Given
+            assertInstanceOf(SlowQueryDataSource.class, dataSource);
+            userRepository.save(new User("indexed", "indexed@example.com", "Index", "Hit"));
+
+            // When
+            userRepository.findByUsername("indexed");
+            jdbcTemplate.queryForList("SELECT id FROM users WHERE first_name = ?", Long.class, "Index");
+
+            // Then
+            List<SlowQueryReport> reports = awaitPlans(2);
+            SlowQueryReport scan = reports.get(0);
+            assertEquals("select id from users where first_name = ?", scan.fingerprint());
+            assertTrue(scan.tableScan());
+            assertEquals(List.of("PUBLIC.USERS"), scan.scannedTables());
+            assertEquals(List.of("(String)"), scan.parameterShapes());
+            SlowQueryReport lookup = reports.stream()
+                .filter(report -> report.fingerprint().contains("where u1_0.username=?"))
+                .findFirst()
+                .orElseThrow();
+            assertFalse(lookup.tableScan());
+            assertNotNull(lookup.plan());
+
+            MockMvc mockMvc = MockMvcBuilders.standaloneSetup(new SlowQueryController(slowQueryRecorder)).build();
+            mockMvc.perform(get("/admin/slow-queries"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].tableScan").value(true))
+                .andExpect(jsonPath("$[0].scannedTables[0]").value("PUBLIC.USERS"));
+        }
+
+        @Test
+        @DisplayName("Should explain statements in the schema they ran in")
+        void shouldExplainStatementsInTheSchemaTheyRanIn() throws Exception {
+            // Given a table that only exists outside the default schema
+            jdbcTemplate.execute("CREATE SCHEMA IF NOT EXISTS EXPLAIN_TENANT");
+            jdbcTemplate.execute("CREATE TABLE IF NOT EXISTS EXPLAIN_TENANT.widgets (id BIGINT PRIMARY KEY, name VARCHAR(64))");
+            try {
+                // When
+                try (Connection connection = dataSource.getConnection()) {
+                    String original = connection.getSchema();
+                    connection.setSchema("EXPLAIN_TENANT");
+                    try (PreparedStatement statement = connection.prepareStatement("SELECT id FROM widgets WHERE name = ?")) {
+                        statement.setString(1, "gear");
+                        statement.executeQuery().close();
+                    } finally {
+                        connection.setSchema(original);
+                    }
+                }
+
+                // Then
+                SlowQueryReport widgets = awaitPlans(1).stream()
+                    .filter(report -> report.fingerprint().equals("select id from widgets where name = ?"))
+                    .findFirst()
+                    .orElseThrow();
+                assertFalse(widgets.plan().startsWith("EXPLAIN failed"), widgets.plan());
+                assertEquals(List.of("EXPLAIN_TENANT.WIDGETS"), widgets.scannedTables());
+                assertEquals("PUBLIC", jdbcTemplate.queryForObject("SELECT SCHEMA()", String.class));
+            } finally {
+                jdbcTemplate.execute("DROP SCHEMA EXPLAIN_TENANT CASCADE");
+            }
+        }
+
+        // EXPLAIN runs in the background; wait until the expected number of select plans arrived
+        private List<SlowQueryReport> awaitPlans(int selects) throws InterruptedException {
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+            while (true) {
+                List<SlowQueryReport> reports = slowQueryRecorder.report(false);
+                long planned = reports.stream()
+                    .filter(report -> report.fingerprint().startsWith("select") && report.plan() != null)
+                    .count();
+                if (planned >= selects || System.nanoTime() > deadline) {
+                    return reports;
+                }
+                Thread.sleep(50);
+            }
+        }
+    }
+
+    // ==================== TENANCY INTEGRATION TESTS ====================
+    @Nested
+    @SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = {
+        "users.tenancy.enabled=true", "users.tenancy.tenants=acme,globex", "users.tenancy.discover=false",
+        "users.reactive.enabled=false", "users.admission.enabled=false", "users.slow-query.enabled=true"})
+    @DisplayName("Tenancy Integration Tests")
+    class TenancyIntegrationTests {
+
+        @LocalServerPort
+        private int port;
+
+        @Autowired
+        private TenantRegistry tenantRegistry;
+
+        @Autowired
+        private UserArchiver userArchiver;
+
+        @Autowired
+        private UserStatsReconciler userStatsReconciler;
+
+        @Autowired
+        private JdbcTemplate jdbcTemplate;
+
+        @Autowired
+        private DataSource dataSource;
+
+        private final HttpClient httpClient = HttpClient.newHttpClient();
+
+        @AfterEach
+        void tearDown() {
+            for (String schema : List.of("TENANT_ACME", "TENANT_GLOBEX")) {
+                jdbcTemplate.update("DELETE FROM " + schema + ".users");
+                jdbcTemplate.update("DELETE FROM " + schema + ".users_archive");
+                jdbcTemplate.update("DELETE FROM " + schema + ".user_signup_stats");
+            }
+        }
+
+        private HttpResponse<String> send(String method, String path, String tenantId, String body) throws Exception {
+            HttpRequest.Builder request = HttpRequest.newBuilder(URI.create("http://localhost:" + port + path))
+                .header("Content-Type", "application/json")
+                .method(method, body == null ? HttpRequest.BodyPublishers.noBody() : HttpRequest.BodyPublishers.ofString(body));
+            if (tenantId != null) {
+                request.header("X-Tenant-Id", tenantId);
+            }
+            return httpClient.send(request.build(), HttpResponse.BodyHandlers.ofString());
+        }
+
+        @Test
+        @DisplayName("Should migrate configured tenant schemas at boot")
+        void shouldMigrateConfiguredTenantSchemasAtBoot() {
+            TenantReport report = tenantRegistry.report();
+            assertEquals("eager", report.mode());
+            assertEquals(2, report.ready());
+            assertTrue(report.eagerMigrationMillis() >= 0);
+            assertEquals(List.of("acme", "globex"), report.details().stream().map(TenantStatus::tenantId).toList());
+            assertEquals("3", report.details().get(0).version());
+            assertEquals(3, jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM TENANT_ACME.\"flyway_schema_history\" " +
+                "WHERE \"type\" = 'SQL' AND \"success\"", Integer.class));
+            SlowQueryDataSource slowQueryDataSource = assertInstanceOf(SlowQueryDataSource.class, dataSource);
+            assertInstanceOf(TenantRoutingDataSource.class, slowQueryDataSource.getTargetDataSource());
+        }
+
+        @Test
+        @DisplayName("Should isolate users per tenant schema")
+        void shouldIsolateUsersPerTenantSchema() throws Exception {
+            // Given
+            String body = "{\"username\":\"tenant1\",\"email\":\"tenant1@example.com\"}";
+            assertEquals(201, send("POST", "/api/users", "acme", body).statusCode());
+
+            // When / Then the same username is free in another tenant and invisible there
+            assertEquals(404, send("GET", "/api/users/username/tenant1", "globex", null).statusCode());
+            assertEquals(201, send("POST", "/api/users", "globex", body).statusCode());
+            assertEquals(200, send("GET", "/api/users/username/tenant1", "acme", null).statusCode());
+            assertEquals(1, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM TENANT_ACME.users", Integer.class));
+            assertEquals(1, jdbcTemplate.queryForObject(
+                "SELECT COALESCE(SUM(user_count), 0) FROM TENANT_ACME.user_signup_stats", Integer.class));
+            assertEquals(0, jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM users WHERE username = 'tenant1'", Integer.class));
+        }
+
+        @Test
+        @DisplayName("Should run the archive and stats jobs in every tenant schema")
+        void shouldRunArchiveAndStatsJobsInEveryTenantSchema() {
+            // Given a stale user in one tenant and a drifted rollup in the other
+            LocalDateTime stale = LocalDateTime.now().minusYears(2);
+            jdbcTemplate.update("INSERT INTO TENANT_ACME.users (username, email, first_name, last_name, created_at, " +
+                "updated_at) VALUES ('stale', 'stale@example.com', 'St', 'Ale', ?, ?)", stale, stale);
+            jdbcTemplate.update("INSERT INTO TENANT_GLOBEX.user_signup_stats (bucket_start, user_count) VALUES (?, 7)",
+                stale.truncatedTo(ChronoUnit.HOURS));
+
+            // When
+            int archived = userArchiver.archiveInactiveUsers();
+            userStatsReconciler.rebuild();
+
+            // Then
+            assertEquals(1, archived);
+            assertEquals(0, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM TENANT_ACME.users", Integer.class));
+            assertEquals(1, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM TENANT_ACME.users_archive", Integer.class));
+            assertEquals(1, jdbcTemplate.queryForObject(
+                "SELECT COALESCE(SUM(user_count), 0) FROM TENANT_ACME.user_signup_stats", Integer.class));
+            assertEquals(0, jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM TENANT_GLOBEX.user_signup_stats", Integer.class));
+            assertNull(TenantContext.get());
+        }
+
+        @Test
+        @DisplayName("Should reject requests without a known tenant")
+        void shouldRejectRequestsWithoutKnownTenant() throws Exception {
+            assertEquals(400, send("GET", "/api/users", null, null).statusCode());
+            assertEquals(400, send("GET", "/api/users", "bad tenant!", null).statusCode());
+            assertEquals(404, send("GET", "/api/users", "initech", null).statusCode());
+        }
+
+        @Test
+        @DisplayName("Should only retry known tenants while registration is disabled")
+        void shouldOnlyRetryKnownTenantsWhileRegistrationIsDisabled() throws Exception {
+            assertEquals(403, send("POST", "/admin/tenants/initech", null, null).statusCode());
+            assertFalse(tenantRegistry.isKnown("initech"));
+            assertEquals(0, jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM INFORMATION_SCHEMA.SCHEMATA WHERE SCHEMA_NAME = 'TENANT_INITECH'", Integer.class));
+            assertEquals(202, send("POST", "/admin/tenants/acme", null, null).statusCode());
+        }
+
+        @Test
+        @DisplayName("Should resolve the tenant before admission control spends a token")
+        void shouldResolveTenantBeforeAdmissionControl() {
+            assertTrue(OrderUtils.getOrder(TenantFilter.class, Ordered.LOWEST_PRECEDENCE)
+                < OrderUtils.getOrder(AdmissionControlFilter.class, Ordered.LOWEST_PRECEDENCE));
+        }
+    }
+
+    // ==================== LAZY TENANCY INTEGRATION TESTS ====================
+    @Nested
+    @SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = {
+        "users.tenancy.enabled=true", "users.tenancy.tenants=hooli", "users.tenancy.discover=false",
+        "users.tenancy.migrate=lazy", "users.tenancy.registration-enabled=true", "users.reactive.enabled=false",
+        "users.admission.enabled=false"})
+    @DisplayName("Lazy Tenancy Integration Tests")
+    class LazyTenancyIntegrationTests {
+
+        @LocalServerPort
+        private int port;
+
+        @Autowired
+        private TenantRegistry tenantRegistry;
+
+        private final HttpClient httpClient = HttpClient.newHttpClient();
+
+        private String stateOf(String tenantId) {
+            return tenantRegistry.report().details().stream()
+                .filter(status -> status.tenantId().equals(tenantId))
+                .findFirst()
+                .map(TenantStatus::state)
+                .orElse(null);
+        }
+
+        @Test
+        @DisplayName("Should migrate a tenant on its first request")
+        void shouldMigrateTenantOnFirstRequest() throws Exception {
+            // Given
+            assertEquals("PENDING", stateOf("hooli"));
+
+            // When
+            HttpResponse<String> response = httpClient.send(
+                HttpRequest.newBuilder(URI.create("http://localhost:" + port + "/api/users"))
+                    .header("X-Tenant-Id", "hooli")
+                    .build(),
+                HttpResponse.BodyHandlers.ofString());
+
+            // Then
+            assertEquals(200, response.statusCode());
+            assertEquals("READY", stateOf("hooli"));
+        }
+
+        @Test
+        @DisplayName("Should register and migrate new tenants through the admin endpoint")
+        void shouldRegisterAndMigrateNewTenantsThroughAdminEndpoint() throws Exception {
+            // When
+            HttpResponse<String> response = httpClient.send(
+                HttpRequest.newBuilder(URI.create("http://localhost:" + port + "/admin/tenants/piedpiper"))
+                    .POST(HttpRequest.BodyPublishers.noBody())
+                    .build(),
+                HttpResponse.BodyHandlers.ofString());
+
+            // Then
+            assertEquals(202, response.statusCode());
+            tenantRegistry.ready("piedpiper").get(30, TimeUnit.SECONDS);
+            assertEquals("READY", stateOf("piedpiper"));
+        }
     }
 }